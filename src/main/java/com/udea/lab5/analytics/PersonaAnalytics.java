@@ -0,0 +1,356 @@
+package com.udea.lab5.analytics;
+
+import com.udea.lab5.analytics.PersonaColumns.Dictionary;
+import com.udea.lab5.analytics.PersonaColumns.Dimension;
+import com.udea.lab5.repository.PersonaRepository;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.DoubleSummaryStatistics;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.inject.Inject;
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import org.slf4j.Logger;
+
+/**
+ * Salary analytics computed over an in-memory columnar snapshot of the
+ * personas.
+ *
+ * <p>
+ * The snapshot is loaded from the database on first use, then kept up to date
+ * with the persona changes once their transaction succeeds. Aggregations scan
+ * the primitive columns in parallel across the available cores.</p>
+ */
+@ApplicationScoped
+public class PersonaAnalytics {
+
+    /**
+     * The maximum number of histogram buckets, each costs an array slot per
+     * core and a JSON object in the response.
+     */
+    public static final int MAX_BUCKETS = 1000;
+
+    private static final int LOAD_FETCH_SIZE = 500;
+
+    private static final int MIN_CHUNK_SIZE = 1 << 14;
+
+    /**
+     * Above this number of rows per distinct group value, the groups are
+     * summed in parallel; below it the per-core partial sums would cost more
+     * than a single pass.
+     */
+    private static final int PARALLEL_GROUPING_RATIO = 8;
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private PersonaRepository personaRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private PersonaColumns columns = new PersonaColumns();
+
+    private boolean loaded;
+
+    /**
+     * The changes observed while the snapshot is being loaded, replayed on it
+     * before it is swapped in; null when no load is running.
+     */
+    private List<PersonaChangeEvent> changesDuringLoad;
+
+    private final Object loadMonitor = new Object();
+
+    private long version;
+
+    private volatile SortedSalarios sortedSalarios;
+
+    /**
+     * Computes the salario statistics of all the personas.
+     *
+     * @param percentiles the percentiles to compute, between 0 and 100
+     * @param buckets the number of histogram buckets, at most
+     * {@link #MAX_BUCKETS}
+     * @param groupBy the column to group by, "nombre" or "direccion", or null
+     * @param top the number of groups with the highest total salario
+     * @return the count, mean, min, max, percentiles, histogram and top groups
+     * @throws IllegalArgumentException if the number of buckets is out of
+     * range or the column can't be grouped by
+     */
+    public JsonObject salarioStatistics(double[] percentiles, int buckets, String groupBy, int top) {
+        if (buckets < 1 || buckets > MAX_BUCKETS) {
+            throw new IllegalArgumentException("buckets must be between 1 and " + MAX_BUCKETS);
+        }
+        if (!canGroupBy(groupBy)) {
+            throw new IllegalArgumentException("Unknown column " + groupBy);
+        }
+        Dimension dimension = groupBy == null ? null : Dimension.valueOf(groupBy.toUpperCase());
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            int size = columns.size();
+            double[] salarios = columns.salarios();
+            JsonObjectBuilder result = Json.createObjectBuilder().add("count", size);
+            if (size == 0) {
+                return result.build();
+            }
+            DoubleSummaryStatistics statistics = Arrays.stream(salarios, 0, size).parallel().summaryStatistics();
+            result.add("mean", statistics.getAverage())
+                    .add("min", statistics.getMin())
+                    .add("max", statistics.getMax())
+                    .add("percentiles", percentiles(sorted(salarios, size), percentiles))
+                    .add("histogram", histogram(salarios, size, statistics.getMin(), statistics.getMax(), buckets));
+            if (dimension != null) {
+                result.add("top", topGroups(dimension, salarios, size, top));
+            }
+            return result.build();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void onPersonaChange(@Observes(during = TransactionPhase.AFTER_SUCCESS) PersonaChangeEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                apply(columns, event);
+                version++;
+            } else if (changesDuringLoad != null) {
+                changesDuringLoad.add(event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Loads the snapshot without holding the lock, so the change observers and
+     * the readers aren't blocked behind the full table read. The changes
+     * observed meanwhile are replayed on the new snapshot before it is swapped
+     * in.
+     */
+    private void ensureLoaded() {
+        if (isLoaded()) {
+            return;
+        }
+        synchronized (loadMonitor) {
+            lock.writeLock().lock();
+            try {
+                if (loaded) {
+                    return;
+                }
+                changesDuringLoad = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            PersonaColumns snapshot = new PersonaColumns();
+            try {
+                personaRepository.scroll(LOAD_FETCH_SIZE, persona
+                        -> snapshot.upsert(persona.getId(), persona.getNombre(), persona.getDireccion(), persona.getSalario()));
+                lock.writeLock().lock();
+                try {
+                    changesDuringLoad.forEach(event -> apply(snapshot, event));
+                    columns = snapshot;
+                    loaded = true;
+                    version++;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                log.debug("Loaded {} personas in the analytics snapshot", snapshot.size());
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    changesDuringLoad = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    private boolean isLoaded() {
+        lock.readLock().lock();
+        try {
+            return loaded;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void apply(PersonaColumns target, PersonaChangeEvent event) {
+        if (event.isRemoved()) {
+            target.remove(event.getId());
+        } else {
+            target.upsert(event.getId(), event.getNombre(), event.getDireccion(), event.getSalario());
+        }
+    }
+
+    /**
+     * Called with the read lock held, the sorted copy is shared until the
+     * snapshot changes.
+     */
+    private double[] sorted(double[] salarios, int size) {
+        SortedSalarios cached = sortedSalarios;
+        if (cached == null || cached.version != version) {
+            double[] values = Arrays.copyOf(salarios, size);
+            Arrays.parallelSort(values);
+            cached = new SortedSalarios(version, values);
+            sortedSalarios = cached;
+        }
+        return cached.values;
+    }
+
+    /**
+     * @param groupBy the column to group by, or null
+     * @return true if the personas can be grouped by the column
+     */
+    public static boolean canGroupBy(String groupBy) {
+        return groupBy == null || Arrays.stream(Dimension.values())
+                .anyMatch(dimension -> dimension.name().equalsIgnoreCase(groupBy));
+    }
+
+    private JsonObjectBuilder percentiles(double[] sorted, double[] percentiles) {
+        JsonObjectBuilder result = Json.createObjectBuilder();
+        for (double percentile : percentiles) {
+            double rank = Math.min(Math.max(percentile, 0), 100) / 100 * (sorted.length - 1);
+            int lower = (int) Math.floor(rank);
+            int upper = (int) Math.ceil(rank);
+            double value = sorted[lower] + (sorted[upper] - sorted[lower]) * (rank - lower);
+            result.add(Double.toString(percentile), value);
+        }
+        return result;
+    }
+
+    private JsonArrayBuilder histogram(double[] salarios, int size, double min, double max, int buckets) {
+        double width = (max - min) / buckets;
+        int chunkSize = chunkSize(size);
+        long[] counts = chunks(size).mapToObj(chunk -> {
+            long[] partial = new long[buckets];
+            for (int i = chunk * chunkSize, end = Math.min(size, i + chunkSize); i < end; i++) {
+                int bucket = width == 0 ? 0 : (int) ((salarios[i] - min) / width);
+                partial[Math.min(bucket, buckets - 1)]++;
+            }
+            return partial;
+        }).reduce(PersonaAnalytics::sum).orElse(new long[buckets]);
+
+        JsonArrayBuilder result = Json.createArrayBuilder();
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            result.add(Json.createObjectBuilder()
+                    .add("from", min + bucket * width)
+                    .add("to", bucket == buckets - 1 ? max : min + (bucket + 1) * width)
+                    .add("count", counts[bucket]));
+        }
+        return result;
+    }
+
+    private JsonArrayBuilder topGroups(Dimension dimension, double[] salarios, int size, int top) {
+        int[] codes = columns.codes(dimension);
+        Dictionary dictionary = columns.dictionary(dimension);
+        int groups = dictionary.size();
+        int chunkSize = chunkSize(size);
+        GroupTotals totals;
+        if ((long) groups * PARALLEL_GROUPING_RATIO <= size) {
+            totals = chunks(size).mapToObj(chunk -> {
+                int from = chunk * chunkSize;
+                return new GroupTotals(groups).add(codes, salarios, from, Math.min(size, from + chunkSize));
+            }).reduce(GroupTotals::merge).orElse(new GroupTotals(groups));
+        } else {
+            totals = new GroupTotals(groups).add(codes, salarios, 0, size);
+        }
+
+        PriorityQueue<Integer> highest = new PriorityQueue<>(
+                (left, right) -> Double.compare(totals.sums[left], totals.sums[right]));
+        for (int code = 0; code < groups; code++) {
+            if (totals.counts[code] == 0) {
+                continue;
+            }
+            highest.add(code);
+            if (highest.size() > top) {
+                highest.poll();
+            }
+        }
+        Integer[] ranked = highest.toArray(new Integer[highest.size()]);
+        Arrays.sort(ranked, (left, right) -> Double.compare(totals.sums[right], totals.sums[left]));
+
+        String key = dimension.name().toLowerCase();
+        JsonArrayBuilder result = Json.createArrayBuilder();
+        for (int code : ranked) {
+            result.add(Json.createObjectBuilder()
+                    .add(key, dictionary.decode(code))
+                    .add("count", totals.counts[code])
+                    .add("total", totals.sums[code])
+                    .add("mean", totals.sums[code] / totals.counts[code]));
+        }
+        return result;
+    }
+
+    private static IntStream chunks(int size) {
+        return IntStream.range(0, (size + chunkSize(size) - 1) / chunkSize(size)).parallel();
+    }
+
+    /**
+     * One chunk per core, but no chunk smaller than {@link #MIN_CHUNK_SIZE}.
+     */
+    private static int chunkSize(int size) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return Math.max(MIN_CHUNK_SIZE, (size + cores - 1) / cores);
+    }
+
+    private static long[] sum(long[] left, long[] right) {
+        for (int i = 0; i < left.length; i++) {
+            left[i] += right[i];
+        }
+        return left;
+    }
+
+    private static class SortedSalarios {
+
+        private final long version;
+        private final double[] values;
+
+        SortedSalarios(long version, double[] values) {
+            this.version = version;
+            this.values = values;
+        }
+    }
+
+    private static class GroupTotals {
+
+        private final double[] sums;
+        private final long[] counts;
+
+        GroupTotals(int groups) {
+            this.sums = new double[groups];
+            this.counts = new long[groups];
+        }
+
+        GroupTotals add(int[] codes, double[] salarios, int from, int to) {
+            for (int i = from; i < to; i++) {
+                sums[codes[i]] += salarios[i];
+                counts[codes[i]]++;
+            }
+            return this;
+        }
+
+        GroupTotals merge(GroupTotals other) {
+            for (int code = 0; code < sums.length; code++) {
+                sums[code] += other.sums[code];
+                counts[code] += other.counts[code];
+            }
+            return this;
+        }
+    }
+}
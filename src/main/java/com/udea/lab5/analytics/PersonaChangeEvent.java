@@ -0,0 +1,51 @@
+package com.udea.lab5.analytics;
+
+/**
+ * A persona change, fired by the persona entity listener and observed once
+ * the transaction succeeds.
+ */
+public class PersonaChangeEvent {
+
+    private final long id;
+    private final String nombre;
+    private final String direccion;
+    private final double salario;
+    private final boolean removed;
+
+    private PersonaChangeEvent(long id, String nombre, String direccion, double salario, boolean removed) {
+        this.id = id;
+        this.nombre = nombre;
+        this.direccion = direccion;
+        this.salario = salario;
+        this.removed = removed;
+    }
+
+    public static PersonaChangeEvent saved(long id, String nombre, String direccion, double salario) {
+        return new PersonaChangeEvent(id, nombre, direccion, salario, false);
+    }
+
+    public static PersonaChangeEvent removed(long id) {
+        return new PersonaChangeEvent(id, null, null, 0, true);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public String getDireccion() {
+        return direccion;
+    }
+
+    public double getSalario() {
+        return salario;
+    }
+
+    public boolean isRemoved() {
+        return removed;
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.udea.lab5.analytics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar copy of the persona table: one primitive array per column, the
+ * strings dictionary-encoded into int codes. Rows are kept dense, a removed row
+ * is replaced by the last one.
+ *
+ * <p>
+ * Not thread-safe, the caller guards it with a read-write lock.</p>
+ */
+class PersonaColumns {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private double[] salarios = new double[INITIAL_CAPACITY];
+    private int[] nombres = new int[INITIAL_CAPACITY];
+    private int[] direcciones = new int[INITIAL_CAPACITY];
+    private int size;
+
+    private final Map<Long, Integer> rowsById = new HashMap<>();
+    private final Dictionary nombreDictionary = new Dictionary();
+    private final Dictionary direccionDictionary = new Dictionary();
+
+    void upsert(long id, String nombre, String direccion, double salario) {
+        Integer row = rowsById.get(id);
+        if (row == null) {
+            ensureCapacity(size + 1);
+            row = size++;
+            rowsById.put(id, row);
+            ids[row] = id;
+        }
+        salarios[row] = salario;
+        nombres[row] = nombreDictionary.encode(nombre);
+        direcciones[row] = direccionDictionary.encode(direccion);
+    }
+
+    void remove(long id) {
+        Integer row = rowsById.remove(id);
+        if (row == null) {
+            return;
+        }
+        int last = --size;
+        if (row != last) {
+            ids[row] = ids[last];
+            salarios[row] = salarios[last];
+            nombres[row] = nombres[last];
+            direcciones[row] = direcciones[last];
+            rowsById.put(ids[row], row);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    double[] salarios() {
+        return salarios;
+    }
+
+    int[] codes(Dimension dimension) {
+        return dimension == Dimension.NOMBRE ? nombres : direcciones;
+    }
+
+    Dictionary dictionary(Dimension dimension) {
+        return dimension == Dimension.NOMBRE ? nombreDictionary : direccionDictionary;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > ids.length) {
+            int newLength = Math.max(capacity, ids.length * 2);
+            ids = Arrays.copyOf(ids, newLength);
+            salarios = Arrays.copyOf(salarios, newLength);
+            nombres = Arrays.copyOf(nombres, newLength);
+            direcciones = Arrays.copyOf(direcciones, newLength);
+        }
+    }
+
+    /**
+     * The string columns the personas can be grouped by.
+     */
+    enum Dimension {
+        NOMBRE, DIRECCION
+    }
+
+    /**
+     * Assigns a stable int code to each distinct string.
+     */
+    static class Dictionary {
+
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int encode(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            return code;
+        }
+
+        String decode(int code) {
+            return values.get(code);
+        }
+
+        int size() {
+            return values.size();
+        }
+    }
+}
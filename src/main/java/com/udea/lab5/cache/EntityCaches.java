@@ -0,0 +1,97 @@
+package com.udea.lab5.cache;
+
+import com.udea.lab5.security.Credential;
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+
+/**
+ * Application wide caches of entity lookups.
+ */
+@ApplicationScoped
+public class EntityCaches {
+
+    @Inject
+    private MetricRegistry registry;
+
+    @Inject
+    @ConfigProperty(name = "cache.user.maxSize", defaultValue = "1000")
+    private int userMaxSize;
+
+    @Resource
+    private TransactionSynchronizationRegistry transactionRegistry;
+
+    private MeteredCache<String, String> authorityNames;
+
+    private MeteredCache<String, Long> userIdsByLogin;
+
+    private MeteredCache<String, Credential> credentialsByLogin;
+
+    @PostConstruct
+    public void init() {
+        authorityNames = new MeteredCache<>("authority", 0, registry);
+        userIdsByLogin = new MeteredCache<>("userByLogin", userMaxSize, registry);
+        credentialsByLogin = new MeteredCache<>("credentialByLogin", userMaxSize, registry);
+    }
+
+    /**
+     * @return the names of the existing authorities, never evicted as
+     * authorities are immutable reference data
+     */
+    public MeteredCache<String, String> getAuthorityNames() {
+        return authorityNames;
+    }
+
+    /**
+     * @return the user ids by login, bounded and invalidated by every user
+     * mutation
+     */
+    public MeteredCache<String, Long> getUserIdsByLogin() {
+        return userIdsByLogin;
+    }
+
+    /**
+     * @return the credentials by login, bounded and invalidated by every user
+     * mutation
+     */
+    public MeteredCache<String, Credential> getCredentialsByLogin() {
+        return credentialsByLogin;
+    }
+
+    /**
+     * Evicts the user now and, inside a transaction, once more when the
+     * transaction completes, so a lookup that read the row before the commit
+     * can't leave the old credential cached.
+     *
+     * @param login the login of the user that changed
+     */
+    public void evictUser(String login) {
+        if (login == null) {
+            return;
+        }
+        invalidateUser(login);
+        if (transactionRegistry != null && transactionRegistry.getTransactionStatus() == Status.STATUS_ACTIVE) {
+            transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    invalidateUser(login);
+                }
+            });
+        }
+    }
+
+    private void invalidateUser(String login) {
+        userIdsByLogin.invalidate(login);
+        credentialsByLogin.invalidate(login);
+    }
+}
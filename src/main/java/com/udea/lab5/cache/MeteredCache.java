@@ -0,0 +1,154 @@
+package com.udea.lab5.cache;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+
+/**
+ * A thread-safe cache, optionally bounded with least recently used eviction,
+ * that exports its hits, misses, evictions, hit ratio and size to the metric
+ * registry.
+ *
+ * <p>
+ * The entries are spread over lock stripes, each an access ordered map bounded
+ * to its share of the maximum size, and a lookup only locks the stripe of its
+ * key. Values are loaded outside of the lock, a value loaded while its
+ * stripe was invalidated is discarded so an invalidation can't be overwritten
+ * by a stale read.</p>
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class MeteredCache<K, V> {
+
+    private static final String CACHE = "cache.";
+
+    private static final int STRIPES = 16;
+
+    private final List<Stripe<K, V>> stripes;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    /**
+     * @param name the cache name, used as metric prefix
+     * @param maxSize the maximum number of entries, or 0 for no bound
+     * @param registry the metric registry
+     */
+    public MeteredCache(String name, int maxSize, MetricRegistry registry) {
+        this.hits = registry.counter(CACHE + name + ".hits");
+        this.misses = registry.counter(CACHE + name + ".misses");
+        this.evictions = registry.counter(CACHE + name + ".evictions");
+        int stripeMaxSize = maxSize > 0 ? Math.max(1, (maxSize + STRIPES - 1) / STRIPES) : 0;
+        this.stripes = new ArrayList<>(STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes.add(new Stripe<>(stripeMaxSize, evictions));
+        }
+        String sizeMetric = CACHE + name + ".size";
+        if (!registry.getGauges().containsKey(sizeMetric)) {
+            registry.register(sizeMetric, (Gauge<Integer>) this::size);
+        }
+        String hitRatioMetric = CACHE + name + ".hitRatio";
+        if (!registry.getGauges().containsKey(hitRatioMetric)) {
+            registry.register(hitRatioMetric, (Gauge<Double>) this::hitRatio);
+        }
+    }
+
+    /**
+     * Returns the cached value, loading it on a miss. A null value is not
+     * cached.
+     *
+     * @param key the key
+     * @param loader the loader of missing values
+     * @return the value, or null if the loader returns null
+     */
+    public V get(K key, Function<K, V> loader) {
+        Stripe<K, V> stripe = stripe(key);
+        long loadGeneration;
+        synchronized (stripe) {
+            V value = stripe.entries.get(key);
+            if (value != null) {
+                hits.inc();
+                return value;
+            }
+            loadGeneration = stripe.generation;
+        }
+        misses.inc();
+        V value = loader.apply(key);
+        if (value != null) {
+            synchronized (stripe) {
+                if (loadGeneration == stripe.generation) {
+                    stripe.entries.put(key, value);
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * @param key the key to remove
+     */
+    public void invalidate(K key) {
+        Stripe<K, V> stripe = stripe(key);
+        synchronized (stripe) {
+            stripe.generation++;
+            stripe.entries.remove(key);
+        }
+    }
+
+    public void invalidateAll() {
+        for (Stripe<K, V> stripe : stripes) {
+            synchronized (stripe) {
+                stripe.generation++;
+                stripe.entries.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.entries.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the share of the lookups served from the cache, between 0 and 1
+     */
+    public double hitRatio() {
+        long hitCount = hits.getCount();
+        long lookups = hitCount + misses.getCount();
+        return lookups == 0 ? 0 : (double) hitCount / lookups;
+    }
+
+    private Stripe<K, V> stripe(K key) {
+        return stripes.get((key.hashCode() & Integer.MAX_VALUE) % STRIPES);
+    }
+
+    private static class Stripe<K, V> {
+
+        private final Map<K, V> entries;
+        private long generation;
+
+        Stripe(int maxSize, Counter evictions) {
+            this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                    boolean evict = maxSize > 0 && size() > maxSize;
+                    if (evict) {
+                        evictions.inc();
+                    }
+                    return evict;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.udea.lab5.com.udea.lab5.modelo;
+
+import java.io.Serializable;
+import java.time.Instant;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+/**
+ * An e-mail waiting to be sent. The row is written in the transaction of the
+ * user change that triggers it, and deleted once the e-mail is sent.
+ */
+@Entity
+@Table(name = "mail_outbox", indexes = @Index(name = "idx_mail_outbox_next_attempt_at", columnList = "failed, next_attempt_at"))
+public class MailOutbox implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Long id;
+
+    @NotNull
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @NotNull
+    @Size(max = 100)
+    @Column(name = "subject_template", length = 100, nullable = false)
+    private String subjectTemplate;
+
+    @NotNull
+    @Size(max = 100)
+    @Column(name = "content_template", length = 100, nullable = false)
+    private String contentTemplate;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @NotNull
+    @Column(name = "next_attempt_at", nullable = false)
+    private Instant nextAttemptAt;
+
+    @NotNull
+    @Column(name = "created_date", nullable = false)
+    private Instant createdDate = Instant.now();
+
+    @Size(max = 255)
+    @Column(name = "last_error", length = 255)
+    private String lastError;
+
+    /**
+     * Set once the e-mail has used up its attempts, the row is then kept for
+     * inspection and no longer sent.
+     */
+    @Column(nullable = false)
+    private boolean failed;
+
+    public MailOutbox() {
+    }
+
+    public MailOutbox(Long userId, String subjectTemplate, String contentTemplate) {
+        this.userId = userId;
+        this.subjectTemplate = subjectTemplate;
+        this.contentTemplate = contentTemplate;
+        this.nextAttemptAt = createdDate;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getSubjectTemplate() {
+        return subjectTemplate;
+    }
+
+    public void setSubjectTemplate(String subjectTemplate) {
+        this.subjectTemplate = subjectTemplate;
+    }
+
+    public String getContentTemplate() {
+        return contentTemplate;
+    }
+
+    public void setContentTemplate(String contentTemplate) {
+        this.contentTemplate = contentTemplate;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public Instant getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(Instant nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public Instant getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(Instant createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    public void setFailed(boolean failed) {
+        this.failed = failed;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        MailOutbox mailOutbox = (MailOutbox) o;
+
+        return !(id != null ? !id.equals(mailOutbox.id) : mailOutbox.id != null);
+    }
+
+    @Override
+    public int hashCode() {
+        return id != null ? id.hashCode() : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "MailOutbox{"
+                + "id=" + id
+                + ", userId=" + userId
+                + ", contentTemplate='" + contentTemplate + '\''
+                + ", attempts=" + attempts
+                + ", nextAttemptAt=" + nextAttemptAt
+                + ", failed=" + failed
+                + "}";
+    }
+}
@@ -5,10 +5,14 @@ import java.util.Objects;
 import javax.persistence.Basic;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+import javax.persistence.Version;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Positive;
 
@@ -16,6 +20,11 @@ import javax.validation.constraints.Positive;
  * @author Lenovo
  */
 @Entity(name = "Persona")
+@EntityListeners(PersonaListener.class)
+@Table(indexes = {
+    @Index(name = "idx_persona_email", columnList = "email"),
+    @Index(name = "idx_persona_nombre", columnList = "nombre"),
+    @Index(name = "idx_persona_salario", columnList = "salario")})
 @NamedQueries({
 @NamedQuery(name = "Persona.findAll", query = "Select e from Persona e"),
 @NamedQuery(name = "Persona.findByNombre", query = "Select p from Persona p where p.nombre=:nombre"),
@@ -53,6 +62,10 @@ public class Persona implements Serializable {
     @Positive
     private double salario;
 
+    @Version
+    @Column(name = "version")
+    private Long version;
+
     public Persona() {
     }
     
@@ -104,6 +117,14 @@ public class Persona implements Serializable {
         this.salario = salario;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (obj == null) {
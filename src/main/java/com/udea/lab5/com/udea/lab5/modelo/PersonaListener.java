@@ -0,0 +1,28 @@
+package com.udea.lab5.com.udea.lab5.modelo;
+
+import com.udea.lab5.analytics.PersonaChangeEvent;
+import javax.enterprise.event.Event;
+import javax.inject.Inject;
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * Entity listener class publishing persona changes
+ */
+public class PersonaListener {
+
+    @Inject
+    private Event<PersonaChangeEvent> changeEvent;
+
+    @PostPersist
+    @PostUpdate
+    void onSave(Persona persona) {
+        changeEvent.fire(PersonaChangeEvent.saved(persona.getId(), persona.getNombre(), persona.getDireccion(), persona.getSalario()));
+    }
+
+    @PostRemove
+    void onRemove(Persona persona) {
+        changeEvent.fire(PersonaChangeEvent.removed(persona.getId()));
+    }
+}
@@ -43,8 +43,8 @@ public class User extends AbstractAuditingEntity implements Serializable {
 
     @JsonbTransient
     @NotNull
-    @Size(min = 32, max = 32)
-    @Column(name = "password_hash", length = 32)
+    @Size(min = 32, max = 128)
+    @Column(name = "password_hash", length = 128)
     private String password;
 
     @Size(max = 50)
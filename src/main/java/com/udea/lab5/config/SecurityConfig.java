@@ -1,16 +1,39 @@
 package com.udea.lab5.config;
 
+import java.util.List;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
+import org.eclipse.microprofile.config.Config;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 @ApplicationScoped
 public class SecurityConfig {
 
+    private static final String PUBLIC_KEY_LOCATION = "mp.jwt.verify.publickey.location";
+
+    @Inject
+    private Config config;
+
     @Inject
     @ConfigProperty(name = "mp.jwt.verify.issuer")
     private String issuer;
 
+    @Inject
+    @ConfigProperty(name = PUBLIC_KEY_LOCATION)
+    private String publicKeyLocation;
+
+    @Inject
+    @ConfigProperty(name = "mp.jwt.verify.algorithms", defaultValue = "RS256")
+    private List<String> verifyAlgorithms;
+
+    @Inject
+    @ConfigProperty(name = "mp.jwt.sign.algorithm", defaultValue = "RS256")
+    private String signAlgorithm;
+
+    @Inject
+    @ConfigProperty(name = "mp.jwt.sign.privatekey.location", defaultValue = "privateKey.pem")
+    private String privateKeyLocation;
+
     @Inject
     @ConfigProperty(name = "mp.jwt.verify.validityInSeconds")
     private long tokenValidityInSeconds;
@@ -26,6 +49,44 @@ public class SecurityConfig {
         return issuer;
     }
 
+    /**
+     * @return the publicKeyLocation
+     */
+    public String getPublicKeyLocation() {
+        return publicKeyLocation;
+    }
+
+    /**
+     * @param algorithm the JWS algorithm, like RS256 or ES256
+     * @return the location of the public key of the algorithm, or the default
+     * publicKeyLocation if the algorithm has none of its own
+     */
+    public String getPublicKeyLocation(String algorithm) {
+        return config.getOptionalValue(PUBLIC_KEY_LOCATION + "." + algorithm, String.class)
+                .orElse(publicKeyLocation);
+    }
+
+    /**
+     * @return the verifyAlgorithms
+     */
+    public List<String> getVerifyAlgorithms() {
+        return verifyAlgorithms;
+    }
+
+    /**
+     * @return the signAlgorithm
+     */
+    public String getSignAlgorithm() {
+        return signAlgorithm;
+    }
+
+    /**
+     * @return the privateKeyLocation
+     */
+    public String getPrivateKeyLocation() {
+        return privateKeyLocation;
+    }
+
     /**
      * @return the tokenValidityInSeconds
      */
@@ -3,13 +3,14 @@ package com.udea.lab5.controller;
 import com.udea.lab5.repository.UserRepository;
 import com.udea.lab5.com.udea.lab5.modelo.User;
 import com.udea.lab5.security.SecurityHelper;
-import com.udea.lab5.service.MailService;
 import com.udea.lab5.service.UserService;
 import com.udea.lab5.controller.vm.KeyAndPasswordVM;
 import com.udea.lab5.controller.vm.ManagedUserVM;
 import com.udea.lab5.controller.vm.PasswordChangeVM;
 import com.udea.lab5.service.dto.UserDTO;
+import com.udea.lab5.controller.util.ETagUtil;
 import com.udea.lab5.controller.util.HeaderUtil;
+import com.udea.lab5.web.RateLimited;
 import static com.udea.lab5.config.Constants.EMAIL_ALREADY_USED_TYPE;
 import static com.udea.lab5.config.Constants.EMAIL_NOT_FOUND_TYPE;
 import static com.udea.lab5.config.Constants.INVALID_PASSWORD_TYPE;
@@ -29,7 +30,9 @@ import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import static javax.ws.rs.core.MediaType.TEXT_PLAIN;
 import javax.ws.rs.core.Response;
 import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
@@ -56,28 +59,32 @@ public class AccountController {
     @Inject
     private UserService userService;
 
-    @Inject
-    private MailService mailService;
-
     @Inject
     private SecurityHelper securityHelper;
 
     @Context
     private HttpServletRequest request;
 
+    @Context
+    private Request jaxrsRequest;
+
     /**
      * POST /register : register the user.
      *
      * @param managedUserVM the managed user DTO
      * @return the Response with status 201 (Created) if the user is registered
-     * or 400 (Bad Request) if the login or e-mail is already in use
+     * or 400 (Bad Request) if the login or e-mail is already in use, or 429
+     * (Too Many Requests) if the client or the login is over its rate limit
      */
     @Timed
     @Operation(summary = "register the user")
     @APIResponse(responseCode = "201", description = "Created")
     @APIResponse(responseCode = "400", description = "Bad Request")
+    @APIResponse(responseCode = "429", description = "Too Many Requests")
+    @APIResponse(responseCode = "503", description = "Service Unavailable")
     @Path("/register")
     @POST
+    @RateLimited(value = "register", key = "login")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_PLAIN})
     public Response registerAccount(@Valid ManagedUserVM managedUserVM) {
@@ -92,7 +99,6 @@ public class AccountController {
                     User user = userService.createUser(managedUserVM.getLogin(), managedUserVM.getPassword(),
                             managedUserVM.getFirstName(), managedUserVM.getLastName(),
                             managedUserVM.getEmail().toLowerCase(), managedUserVM.getLangKey());
-                    mailService.sendActivationEmail(user);
                     return Response.status(CREATED).build();
                 })
                 );
@@ -139,11 +145,13 @@ public class AccountController {
      * GET /account : get the current user.
      *
      * @return the Response with status 200 (OK) and the current user in body,
-     * or status 500 (Internal Server Error) if the user couldn't be returned
+     * or status 304 (Not Modified) if it matches the If-None-Match header, or
+     * status 500 (Internal Server Error) if the user couldn't be returned
      */
     @Timed
     @Operation(summary = "get the current user")
     @APIResponse(responseCode = "200", description = "OK")
+    @APIResponse(responseCode = "304", description = "Not Modified")
     @APIResponse(responseCode = "500", description = "Internal Server Error")
     @Path("/account")
     @GET
@@ -151,7 +159,13 @@ public class AccountController {
     @RolesAllowed(USER)
     public Response getAccount() {
         return Optional.ofNullable(userService.getUserWithAuthorities())
-                .map(user -> Response.ok(new UserDTO(user)).build())
+                .map(user -> {
+                    EntityTag etag = ETagUtil.forUser(user);
+                    return Optional.ofNullable(jaxrsRequest.evaluatePreconditions(etag))
+                            .orElseGet(() -> Response.ok(new UserDTO(user)))
+                            .tag(etag)
+                            .build();
+                })
                 .orElse(Response.status(INTERNAL_SERVER_ERROR).build());
     }
 
@@ -199,6 +213,7 @@ public class AccountController {
     @Operation(summary = "changes the current user's password")
     @APIResponse(responseCode = "200", description = "OK")
     @APIResponse(responseCode = "400", description = "Bad Request")
+    @APIResponse(responseCode = "503", description = "Service Unavailable")
     @Path("/account/change-password")
     @POST
     @Consumes({MediaType.APPLICATION_JSON})
@@ -218,21 +233,23 @@ public class AccountController {
      *
      * @param mail the mail of the user
      * @return the Response with status 200 (OK) if the e-mail was sent, or
-     * status 400 (Bad Request) if the e-mail address is not registred
+     * status 400 (Bad Request) if the e-mail address is not registred, or
+     * status 429 (Too Many Requests) if the client or the e-mail is over its
+     * rate limit
      */
     @Timed
     @Operation(summary = "Send an e-mail to reset the password")
     @APIResponse(responseCode = "200", description = "OK")
     @APIResponse(responseCode = "400", description = "Bad Request")
+    @APIResponse(responseCode = "429", description = "Too Many Requests")
     @Path("/account/reset-password/init")
     @POST
+    @RateLimited(value = "resetPassword", key = RateLimited.BODY)
     @Produces({MediaType.APPLICATION_JSON})
     public Response requestPasswordReset(String mail) {
         return userService.requestPasswordReset(mail)
-                .map(user -> {
-                    mailService.sendPasswordResetMail(user);
-                    return Response.ok().build();
-                }).orElse(Response.status(BAD_REQUEST).entity(EMAIL_NOT_FOUND_TYPE).build());
+                .map(user -> Response.ok().build())
+                .orElse(Response.status(BAD_REQUEST).entity(EMAIL_NOT_FOUND_TYPE).build());
     }
 
     /**
@@ -249,6 +266,7 @@ public class AccountController {
     @APIResponse(responseCode = "200", description = "OK")
     @APIResponse(responseCode = "400", description = "Bad Request")
     @APIResponse(responseCode = "500", description = "Internal Server Error")
+    @APIResponse(responseCode = "503", description = "Service Unavailable")
     @Path("/account/reset-password/finish")
     @POST
     @Consumes({MediaType.APPLICATION_JSON})
@@ -1,18 +1,23 @@
 package com.udea.lab5.controller;
 
-import com.udea.lab5.com.udea.lab5.modelo.Authority;
-import com.udea.lab5.com.udea.lab5.modelo.User;
+import com.udea.lab5.security.Credential;
 import com.udea.lab5.security.TokenProvider;
+import com.udea.lab5.security.TokenRevocationList;
+import com.udea.lab5.security.VerifiedToken;
 import com.udea.lab5.service.UserService;
 import com.udea.lab5.service.dto.LoginDTO;
+import com.udea.lab5.web.RateLimited;
 import static com.udea.lab5.config.Constants.BEARER_PREFIX;
-import static java.util.stream.Collectors.toSet;
+import static com.udea.lab5.security.AuthoritiesConstants.USER;
+import javax.annotation.security.RolesAllowed;
 import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
 import javax.security.enterprise.AuthenticationException;
 import javax.validation.Valid;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.MediaType;
 import static javax.ws.rs.core.HttpHeaders.AUTHORIZATION;
@@ -30,6 +35,12 @@ public class AuthenticationController {
     @Inject
     private UserService userService;
 
+    @Inject
+    private TokenRevocationList tokenRevocationList;
+
+    @Context
+    private HttpServletRequest request;
+
     /**
      * POST /authenticate : authenticate the credential.
      * <p>
@@ -38,22 +49,28 @@ public class AuthenticationController {
      *
      * @param loginDTO the login details to authenticate
      * @return the Response with status 200 (OK) and with body the new jwt
-     * token, or with status 401 (Unauthorized) if the authentication fails
+     * token, or with status 401 (Unauthorized) if the authentication fails, or
+     * with status 429 (Too Many Requests) if the client or the login is over
+     * its rate limit, or with status 503 (Service Unavailable) if the password
+     * hashing queue is full
      */
     @Timed
     @Operation(summary = "authenticate the credential")
     @APIResponse(responseCode = "200", description = "OK")
     @APIResponse(responseCode = "401", description = "Unauthorized")
+    @APIResponse(responseCode = "429", description = "Too Many Requests")
+    @APIResponse(responseCode = "503", description = "Service Unavailable")
     @Path("/authenticate")
     @POST
+    @RateLimited(value = "authenticate", key = "username")
     @Consumes({MediaType.APPLICATION_JSON})
     public Response login(@Valid LoginDTO loginDTO) {
-        User user;
+        Credential credential;
         try {
-            user = userService.authenticate(loginDTO);
+            credential = userService.authenticate(loginDTO);
             String token = tokenProvider.createToken(
-                    user.getLogin(),
-                    user.getAuthorities().stream().map(Authority::getName).collect(toSet()),
+                    credential.getLogin(),
+                    credential.getGroups(),
                     loginDTO.isRememberMe()
             );
             return Response.ok()
@@ -66,4 +83,26 @@ public class AuthenticationController {
         }
     }
 
+    /**
+     * POST /logout : revoke the token of the request.
+     * <p>
+     * The token is rejected from now on, until it expires.
+     * </p>
+     *
+     * @return the Response with status 200 (OK)
+     */
+    @Timed
+    @Operation(summary = "revoke the current token")
+    @APIResponse(responseCode = "200", description = "OK")
+    @Path("/logout")
+    @POST
+    @RolesAllowed(USER)
+    public Response logout() {
+        VerifiedToken token = (VerifiedToken) request.getAttribute(VerifiedToken.class.getName());
+        if (token != null) {
+            tokenRevocationList.revoke(token.getId(), token.getExpirationTime());
+        }
+        return Response.ok().build();
+    }
+
 }
@@ -0,0 +1,72 @@
+package com.udea.lab5.controller;
+
+import com.udea.lab5.analytics.PersonaAnalytics;
+import static com.udea.lab5.security.AuthoritiesConstants.USER;
+import java.util.Arrays;
+import javax.annotation.security.RolesAllowed;
+import javax.inject.Inject;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
+import org.eclipse.microprofile.metrics.annotation.Timed;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.slf4j.Logger;
+
+/**
+ * REST controller for the Persona salary analytics.
+ */
+@Path("/api/persona/analytics")
+@RolesAllowed(USER)
+public class PersonaAnalyticsController {
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private PersonaAnalytics personaAnalytics;
+
+    /**
+     * GET /salario : get the salario statistics of all the personas.
+     *
+     * @param percentiles the comma separated percentiles to compute
+     * @param buckets the number of histogram buckets, at most 1000
+     * @param groupBy the column to group by, nombre or direccion
+     * @param top the number of groups with the highest total salario
+     * @return the Response with status 200 (OK) and with body the statistics,
+     * or with status 400 (Bad Request) if a parameter is not valid
+     */
+    @Timed
+    @Operation(summary = "get the salario statistics")
+    @APIResponse(responseCode = "200", description = "OK")
+    @APIResponse(responseCode = "400", description = "Bad Request")
+    @GET
+    @Path("/salario")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getSalarioStatistics(@QueryParam("percentiles") @DefaultValue("50,90,95,99") String percentiles,
+            @QueryParam("buckets") @DefaultValue("10") int buckets,
+            @QueryParam("groupBy") String groupBy,
+            @QueryParam("top") @DefaultValue("10") int top) {
+        log.debug("REST request to get Persona salario statistics grouped by {}", groupBy);
+        double[] values;
+        try {
+            values = Arrays.stream(percentiles.split(","))
+                    .map(String::trim)
+                    .filter(value -> !value.isEmpty())
+                    .mapToDouble(Double::parseDouble)
+                    .toArray();
+        } catch (NumberFormatException ex) {
+            return Response.status(BAD_REQUEST).build();
+        }
+        if (buckets < 1 || buckets > PersonaAnalytics.MAX_BUCKETS || top < 0 || !PersonaAnalytics.canGroupBy(groupBy)) {
+            return Response.status(BAD_REQUEST).build();
+        }
+        return Response.ok(personaAnalytics.salarioStatistics(values, buckets, groupBy, top)).build();
+    }
+
+}
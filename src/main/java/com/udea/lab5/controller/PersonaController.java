@@ -1,16 +1,35 @@
 package com.udea.lab5.controller;
 
 import com.udea.lab5.com.udea.lab5.modelo.Persona;
+import com.udea.lab5.repository.PersonaFilter;
 import com.udea.lab5.repository.PersonaRepository;
+import com.udea.lab5.service.PersonaImportService;
+import com.udea.lab5.service.dto.BulkImportDTO;
+import com.udea.lab5.util.CsvUtil;
+import com.udea.lab5.controller.util.ETagUtil;
 import com.udea.lab5.controller.util.HeaderUtil;
+import com.udea.lab5.controller.util.ParameterUtil;
 import static com.udea.lab5.security.AuthoritiesConstants.USER;
 import org.slf4j.Logger;
 import javax.inject.Inject;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
 import java.util.Optional;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import javax.annotation.security.RolesAllowed;
+import javax.json.Json;
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
@@ -19,10 +38,18 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Response.ResponseBuilder;
+import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
+import static javax.ws.rs.core.Response.Status.NOT_FOUND;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriBuilder;
+import com.udea.lab5.controller.util.CountMode;
 import com.udea.lab5.controller.util.Page;
 import com.udea.lab5.controller.util.PaginationUtil;
 import org.eclipse.microprofile.metrics.annotation.Timed;
@@ -43,8 +70,22 @@ public class PersonaController {
     @Inject
     private PersonaRepository personaRepository;
 
+    @Inject
+    private PersonaImportService personaImportService;
+
+    @Context
+    private Request request;
+
     private static final String ENTITY_NAME = "persona";
 
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+    private static final String TEXT_CSV = "text/csv";
+
+    private static final int EXPORT_FETCH_SIZE = 500;
+
+    private static final Jsonb JSONB = JsonbBuilder.create();
+
     /**
      * POST : Create a new persona.
      *
@@ -69,66 +110,265 @@ public class PersonaController {
                 .entity(persona).build();
     }
 
+    /**
+     * POST /bulk : Create personas from newline delimited JSON.
+     *
+     * @param body the personas, one JSON object per line
+     * @return the Response with status 200 (OK) and with body the import
+     * summary per chunk, including the rejected rows
+     * @throws IOException if the body can't be read
+     */
+    @Timed
+    @Operation(summary = "create personas in bulk", description = "Create personas from newline delimited JSON")
+    @APIResponse(responseCode = "200", description = "OK")
+    @POST
+    @Path("/bulk")
+    @Consumes(APPLICATION_NDJSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response createPersonasFromNdjson(InputStream body) throws IOException {
+        log.debug("REST request to import Personas from NDJSON");
+        BulkImportDTO result = personaImportService.importNdjson(new BufferedReader(new InputStreamReader(body, UTF_8)));
+        return HeaderUtil.createEntityCreationAlert(Response.ok(result), ENTITY_NAME, Integer.toString(result.getCreated())).build();
+    }
+
+    /**
+     * POST /bulk : Create personas from CSV.
+     *
+     * @param body the personas, with a header line naming the columns
+     * @return the Response with status 200 (OK) and with body the import
+     * summary per chunk, including the rejected rows
+     * @throws IOException if the body can't be read
+     */
+    @Timed
+    @Operation(summary = "create personas in bulk", description = "Create personas from CSV")
+    @APIResponse(responseCode = "200", description = "OK")
+    @POST
+    @Path("/bulk")
+    @Consumes(TEXT_CSV)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response createPersonasFromCsv(InputStream body) throws IOException {
+        log.debug("REST request to import Personas from CSV");
+        BulkImportDTO result = personaImportService.importCsv(new BufferedReader(new InputStreamReader(body, UTF_8)));
+        return HeaderUtil.createEntityCreationAlert(Response.ok(result), ENTITY_NAME, Integer.toString(result.getCreated())).build();
+    }
+
     /**
      * PUT : Updates an existing persona.
      *
+     * <p>
+     * With an If-Match header the update only goes through if the persona is
+     * still at that version. Without a version in the body, the current one is
+     * used.
+     * </p>
+     *
      * @param persona the persona to update
      * @return the Response with status 200 (OK) and with body the updated
      * persona, or with status 400 (Bad Request) if the persona is not valid, or
-     * with status 500 (Internal Server Error) if the persona couldn't be
-     * updated
+     * with status 412 (Precondition Failed) if the persona has been modified
+     * since, or with status 500 (Internal Server Error) if the persona couldn't
+     * be updated
      * @throws URISyntaxException if the Location URI syntax is incorrect
      */
     @Timed
     @Operation(summary = "update persona", description = "Updates an existing persona")
     @APIResponse(responseCode = "200", description = "OK")
     @APIResponse(responseCode = "400", description = "Bad Request")
+    @APIResponse(responseCode = "412", description = "Precondition Failed")
     @APIResponse(responseCode = "500", description = "Internal Server Error")
     @PUT
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
     public Response updatePersona(Persona persona) throws URISyntaxException {
         log.debug("REST request to update Persona : {}", persona);
-        personaRepository.edit(persona);
-        return HeaderUtil.createEntityUpdateAlert(Response.ok(), ENTITY_NAME, persona.getId().toString())
-                .entity(persona).build();
+        Persona current = persona.getId() == null ? null : personaRepository.find(persona.getId());
+        if (current != null) {
+            ResponseBuilder preconditionFailed = request.evaluatePreconditions(ETagUtil.forVersion(current.getId(), current.getVersion()));
+            if (preconditionFailed != null) {
+                return preconditionFailed.build();
+            }
+            if (persona.getVersion() == null) {
+                persona.setVersion(current.getVersion());
+            }
+        }
+        Persona updated = personaRepository.editAndFlush(persona);
+        return HeaderUtil.createEntityUpdateAlert(Response.ok(), ENTITY_NAME, updated.getId().toString())
+                .tag(ETagUtil.forVersion(updated.getId(), updated.getVersion()))
+                .entity(updated).build();
     }
 
     /**
      * GET : get all the personas.
      *
+     * <p>
+     * When the "after" parameter is present the keyset (cursor) mode is used:
+     * the personas with an id greater than "after" are returned ordered by id,
+     * and the Link header points to the next cursor.
+     * </p>
+     * <p>
+     * The ETag covers the versions of the personas of the page, so a client
+     * polling with If-None-Match gets 304 (Not Modified) until one of them
+     * changes.
+     * </p>
+     *
      * @param page the pagination information
      * @param size the pagination size information
+     * @param after the id of the last persona of the previous page
+     * @param count how the total count is computed: exact (default), estimate
+     * or false to skip it
      *
      * @return the Response with status 200 (OK) and the list of personas in
-     * body
+     * body, or with status 304 (Not Modified)
      * @throws URISyntaxException if there is an error to generate the
      * pagination HTTP headers
      */
     @Timed
     @Operation(summary = "get all the personas")
     @APIResponse(responseCode = "200", description = "OK")
+    @APIResponse(responseCode = "304", description = "Not Modified")
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     @Timeout
-    public Response getAllPersonas(@QueryParam("page") int page, @QueryParam("size") int size) throws URISyntaxException {
+    public Response getAllPersonas(@QueryParam("page") int page, @QueryParam("size") int size,
+            @QueryParam("after") Long after, @QueryParam("count") String count) throws URISyntaxException {
         log.debug("REST request to get all Personas");
+        if (after != null) {
+            List<Persona> personas = personaRepository.findRangeAfter(after, size);
+            EntityTag etag = ETagUtil.forPage(personas, PersonaController::etag, "after", after, size);
+            ResponseBuilder builder = request.evaluatePreconditions(etag);
+            if (builder != null) {
+                return builder.build();
+            }
+            builder = Response.ok(personas).tag(etag);
+            Long nextCursor = personas.isEmpty() ? null : personas.get(personas.size() - 1).getId();
+            PaginationUtil.generateCursorPaginationHttpHeaders(builder, size, personas.size(), nextCursor, "/resources/api/persona");
+            return builder.build();
+        }
         List<Persona> personas = personaRepository.findRange(page * size, size);
+        Page pageInfo = new Page(page, size, CountMode.fromParameter(count).count(personaRepository));
+        EntityTag etag = ETagUtil.forPage(personas, PersonaController::etag, page, size, pageInfo.getTotalElements());
+        ResponseBuilder builder = request.evaluatePreconditions(etag);
+        if (builder != null) {
+            return builder.build();
+        }
+        builder = Response.ok(personas).tag(etag);
+        PaginationUtil.generatePaginationHttpHeaders(builder, pageInfo, "/resources/api/persona");
+        return builder.build();
+    }
+
+    /**
+     * GET /search : search the personas with combinable filters.
+     *
+     * @param email the exact email
+     * @param nombre the prefix of the nombre
+     * @param minSalario the minimum salario, inclusive
+     * @param maxSalario the maximum salario, inclusive
+     * @param page the pagination information
+     * @param size the pagination size information
+     * @param count "false" to skip the total count
+     * @return the Response with status 200 (OK) and the matching personas in
+     * body
+     * @throws URISyntaxException if there is an error to generate the
+     * pagination HTTP headers
+     */
+    @Timed
+    @Operation(summary = "search the personas")
+    @APIResponse(responseCode = "200", description = "OK")
+    @GET
+    @Path("/search")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Timeout
+    public Response searchPersonas(@QueryParam("email") String email, @QueryParam("nombre") String nombre,
+            @QueryParam("minSalario") Double minSalario, @QueryParam("maxSalario") Double maxSalario,
+            @QueryParam("page") int page, @QueryParam("size") int size, @QueryParam("count") String count) throws URISyntaxException {
+        PersonaFilter filter = new PersonaFilter(email, nombre, minSalario, maxSalario);
+        log.debug("REST request to search Personas : {}", filter);
+        List<Persona> personas = personaRepository.search(filter, page * size, size);
+        int total = CountMode.fromParameter(count) == CountMode.NONE ? Page.UNKNOWN_TOTAL : personaRepository.countSearch(filter);
+        UriBuilder baseUri = UriBuilder.fromPath("/resources/api/persona/search");
+        if (email != null) {
+            baseUri.queryParam("email", email);
+        }
+        if (nombre != null) {
+            baseUri.queryParam("nombre", nombre);
+        }
+        if (minSalario != null) {
+            baseUri.queryParam("minSalario", minSalario);
+        }
+        if (maxSalario != null) {
+            baseUri.queryParam("maxSalario", maxSalario);
+        }
         ResponseBuilder builder = Response.ok(personas);
-        PaginationUtil.generatePaginationHttpHeaders(builder, new Page(page, size, personaRepository.count()), "/resources/api/persona");
+        PaginationUtil.generatePaginationHttpHeaders(builder, new Page(page, size, total), baseUri.build().toString());
         return builder.build();
     }
 
+    /**
+     * GET /export : stream all the personas as newline delimited JSON.
+     *
+     * @return the Response with status 200 (OK) and the personas in body, one
+     * JSON object per line
+     */
+    @Timed
+    @Operation(summary = "export all the personas")
+    @APIResponse(responseCode = "200", description = "OK")
+    @GET
+    @Path("/export")
+    @Produces(APPLICATION_NDJSON)
+    public Response exportPersonasAsNdjson() {
+        log.debug("REST request to export Personas as NDJSON");
+        return export(APPLICATION_NDJSON, "personas.ndjson", null,
+                (writer, persona) -> writer.write(JSONB.toJson(persona)));
+    }
+
+    /**
+     * GET /export : stream all the personas as CSV.
+     *
+     * @return the Response with status 200 (OK) and the personas in body, one
+     * CSV line per persona after the header line
+     */
+    @Timed
+    @Operation(summary = "export all the personas")
+    @APIResponse(responseCode = "200", description = "OK")
+    @GET
+    @Path("/export")
+    @Produces(TEXT_CSV)
+    public Response exportPersonasAsCsv() {
+        log.debug("REST request to export Personas as CSV");
+        return export(TEXT_CSV, "personas.csv", CsvUtil.join("id", "nombre", "email", "direccion", "salario"),
+                (writer, persona) -> writer.write(CsvUtil.join(persona.getId(), persona.getNombre(),
+                        persona.getEmail(), persona.getDireccion(), persona.getSalario())));
+    }
+
+    private Response export(String mediaType, String fileName, String header, PersonaWriter personaWriter) {
+        StreamingOutput stream = output -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, UTF_8));
+            if (header != null) {
+                writer.write(header);
+                writer.write('\n');
+            }
+            personaRepository.scroll(EXPORT_FETCH_SIZE, persona -> {
+                personaWriter.write(writer, persona);
+                writer.write('\n');
+            });
+            writer.flush();
+        };
+        return Response.ok(stream, mediaType)
+                .header("Content-Disposition", "attachment; filename=\"" + fileName + "\"")
+                .build();
+    }
+
     /**
      * GET /:id : get the "id" persona.
      *
      * @param id the id of the persona to retrieve
      * @return the Response with status 200 (OK) and with body the persona, or
+     * with status 304 (Not Modified) if it matches the If-None-Match header, or
      * with status 404 (Not Found)
      */
     @Timed
     @Operation(summary = "get the persona")
     @APIResponse(responseCode = "200", description = "OK")
+    @APIResponse(responseCode = "304", description = "Not Modified")
     @APIResponse(responseCode = "404", description = "Not Found")
     @GET
     @Path("/{id}")
@@ -137,7 +377,13 @@ public class PersonaController {
         log.debug("REST request to get Persona : {}", id);
         Persona persona = personaRepository.find(id);
         return Optional.ofNullable(persona)
-                .map(result -> Response.status(Response.Status.OK).entity(persona).build())
+                .map(result -> {
+                    EntityTag etag = etag(result);
+                    return Optional.ofNullable(request.evaluatePreconditions(etag))
+                            .orElseGet(() -> Response.status(Response.Status.OK).entity(result))
+                            .tag(etag)
+                            .build();
+                })
                 .orElse(Response.status(Response.Status.NOT_FOUND).build());
     }
 
@@ -145,7 +391,8 @@ public class PersonaController {
      * DELETE /:id : remove the "id" persona.
      *
      * @param id the id of the persona to delete
-     * @return the Response with status 200 (OK)
+     * @return the Response with status 200 (OK), or with status 404 (Not
+     * Found)
      */
     @Timed
     @Operation(summary = "remove the persona")
@@ -155,8 +402,61 @@ public class PersonaController {
     @Path("/{id}")
     public Response removePersona(@PathParam("id") Long id) {
         log.debug("REST request to delete Persona : {}", id);
-        personaRepository.remove(personaRepository.find(id));
+        if (personaRepository.removeAll(singletonList(id)) == 0) {
+            return Response.status(NOT_FOUND).build();
+        }
         return HeaderUtil.createEntityDeletionAlert(Response.ok(), ENTITY_NAME, id.toString()).build();
     }
 
+    /**
+     * DELETE : remove the personas by ids, or else by the search filters.
+     *
+     * @param ids the comma separated ids of the personas to delete
+     * @param email the exact email
+     * @param nombre the prefix of the nombre
+     * @param minSalario the minimum salario, inclusive
+     * @param maxSalario the maximum salario, inclusive
+     * @return the Response with status 200 (OK) and with body the number of
+     * deleted personas, or with status 400 (Bad Request) if neither ids nor
+     * non blank filters are given
+     */
+    @Timed
+    @Operation(summary = "remove the personas", description = "Remove the personas by ids or by search filters")
+    @APIResponse(responseCode = "200", description = "OK")
+    @APIResponse(responseCode = "400", description = "Bad Request")
+    @DELETE
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response removePersonas(@QueryParam("ids") List<String> ids, @QueryParam("email") String email,
+            @QueryParam("nombre") String nombre, @QueryParam("minSalario") Double minSalario,
+            @QueryParam("maxSalario") Double maxSalario) {
+        List<String> values = ParameterUtil.splitValues(ids);
+        PersonaFilter filter = new PersonaFilter(email, nombre, minSalario, maxSalario);
+        int deleted;
+        if (!values.isEmpty()) {
+            log.debug("REST request to delete Personas : {}", values);
+            try {
+                deleted = personaRepository.removeAll(values.stream().map(Long::valueOf).collect(toList()));
+            } catch (NumberFormatException ex) {
+                return Response.status(BAD_REQUEST).build();
+            }
+        } else if (!filter.isEmpty()) {
+            log.debug("REST request to delete Personas : {}", filter);
+            deleted = personaRepository.removeBySearch(filter);
+        } else {
+            return Response.status(BAD_REQUEST).build();
+        }
+        return HeaderUtil.createEntityDeletionAlert(Response.ok(Json.createObjectBuilder().add("deleted", deleted).build()),
+                ENTITY_NAME, Integer.toString(deleted)).build();
+    }
+
+    private static EntityTag etag(Persona persona) {
+        return ETagUtil.forVersion(persona.getId(), persona.getVersion());
+    }
+
+    @FunctionalInterface
+    private interface PersonaWriter {
+
+        void write(Writer writer, Persona persona) throws IOException;
+    }
+
 }
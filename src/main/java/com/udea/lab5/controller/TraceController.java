@@ -0,0 +1,47 @@
+package com.udea.lab5.controller;
+
+import com.udea.lab5.metrics.RequestTrace;
+import com.udea.lab5.metrics.RequestTracer;
+import static com.udea.lab5.security.AuthoritiesConstants.ADMIN;
+import java.util.List;
+import javax.annotation.security.RolesAllowed;
+import javax.inject.Inject;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import org.eclipse.microprofile.metrics.annotation.Timed;
+
+/**
+ * Controller for viewing the slowest request traces.
+ */
+@Path("/api/traces")
+@RolesAllowed(ADMIN)
+public class TraceController {
+
+    @Inject
+    private RequestTracer tracer;
+
+    /**
+     * GET /traces : get the slowest recent requests, with their timing
+     * breakdown.
+     *
+     * @return the traces, slowest first
+     */
+    @GET
+    @Timed
+    @Produces(APPLICATION_JSON)
+    public List<RequestTrace> getSlowest() {
+        return tracer.getSlowest();
+    }
+
+    /**
+     * DELETE /traces : forget the recorded traces.
+     */
+    @DELETE
+    @Timed
+    public void clear() {
+        tracer.clear();
+    }
+}
@@ -2,13 +2,15 @@ package com.udea.lab5.controller;
 
 import com.udea.lab5.repository.UserRepository;
 import com.udea.lab5.com.udea.lab5.modelo.User;
-import com.udea.lab5.service.MailService;
 import com.udea.lab5.service.UserService;
 import com.udea.lab5.controller.vm.ManagedUserVM;
 import com.udea.lab5.service.dto.UserDTO;
+import com.udea.lab5.controller.util.ETagUtil;
 import com.udea.lab5.controller.util.HeaderUtil;
+import com.udea.lab5.controller.util.CountMode;
 import com.udea.lab5.controller.util.Page;
 import com.udea.lab5.controller.util.PaginationUtil;
+import com.udea.lab5.controller.util.ParameterUtil;
 import static com.udea.lab5.config.Constants.EMAIL_ALREADY_USED_TYPE;
 import static com.udea.lab5.config.Constants.LOGIN_ALREADY_USED_TYPE;
 import static com.udea.lab5.security.AuthoritiesConstants.ADMIN;
@@ -20,6 +22,7 @@ import java.net.URISyntaxException;
 import java.util.*;
 import static java.util.stream.Collectors.toList;
 import javax.annotation.security.RolesAllowed;
+import javax.json.Json;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
@@ -29,7 +32,10 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
 import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
@@ -55,12 +61,12 @@ public class UserController {
     @Inject
     private UserRepository userRepository;
 
-    @Inject
-    private MailService mailService;
-
     @Inject
     private UserService userService;
 
+    @Context
+    private Request request;
+
     /**
      * POST /users : Creates a new user.
      * <p>
@@ -79,6 +85,7 @@ public class UserController {
     @Operation(summary = "create a new user")
     @APIResponse(responseCode = "201", description = "Created")
     @APIResponse(responseCode = "400", description = "Bad Request")
+    @APIResponse(responseCode = "503", description = "Service Unavailable")
     @Path(value = "/users")
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
@@ -94,7 +101,6 @@ public class UserController {
             return HeaderUtil.createFailureAlert(Response.status(BAD_REQUEST), "userManagement", "emailexists", EMAIL_ALREADY_USED_TYPE).build();
         } else {
             User newUser = userService.createUser(managedUserVM);
-            mailService.sendCreationEmail(newUser);
             return HeaderUtil.createAlert(Response.created(new URI("/resources/api/users/" + newUser.getLogin())),
                     "userManagement.created", newUser.getLogin()).entity(new UserDTO(newUser)).build();
         }
@@ -106,13 +112,16 @@ public class UserController {
      * @param managedUserVM the user to update
      * @return the Response with status 200 (OK) and with body the updated user,
      * or with status 400 (Bad Request) if the login or email is already in use,
-     * or with status 500 (Internal Server Error) if the user couldn't be
-     * updated
+     * or with status 404 (Not Found), or with status 412 (Precondition Failed)
+     * if the user doesn't match the If-Match header, or with status 500
+     * (Internal Server Error) if the user couldn't be updated
      */
     @Timed
     @Operation(summary = "update user")
     @APIResponse(responseCode = "200", description = "OK")
     @APIResponse(responseCode = "400", description = "Bad Request")
+    @APIResponse(responseCode = "404", description = "Not Found")
+    @APIResponse(responseCode = "412", description = "Precondition Failed")
     @APIResponse(responseCode = "500", description = "Internal Server Error")
     @Path(value = "/users")
     @PUT
@@ -121,6 +130,14 @@ public class UserController {
     @RolesAllowed(ADMIN)
     public Response updateUser(ManagedUserVM managedUserVM) {
         log.debug("REST request to update User : {}", managedUserVM);
+        User currentUser = managedUserVM.getId() == null ? null : userService.getUserWithAuthorities(managedUserVM.getId());
+        if (currentUser == null) {
+            return Response.status(NOT_FOUND).build();
+        }
+        ResponseBuilder preconditionFailed = request.evaluatePreconditions(ETagUtil.forUser(currentUser));
+        if (preconditionFailed != null) {
+            return preconditionFailed.build();
+        }
         Optional<User> existingUser = userRepository.findOneByEmail(managedUserVM.getEmail());
         if (existingUser.isPresent() && (!existingUser.get().getId().equals(managedUserVM.getId()))) {
             return HeaderUtil.createFailureAlert(Response.status(BAD_REQUEST), "userManagement", "emailexists", EMAIL_ALREADY_USED_TYPE).build();
@@ -129,7 +146,7 @@ public class UserController {
         if (existingUser.isPresent() && (!existingUser.get().getId().equals(managedUserVM.getId()))) {
             return HeaderUtil.createFailureAlert(Response.status(BAD_REQUEST), "userManagement", "userexists", LOGIN_ALREADY_USED_TYPE).build();
         }
-        Optional<UserDTO> updatedUser = userService.updateUser(managedUserVM);
+        Optional<UserDTO> updatedUser = userService.updateUser(managedUserVM, currentUser.getVersion());
 
         return updatedUser.map(userDTO -> HeaderUtil.createAlert(Response.ok(userDTO),
                 "userManagement.updated", managedUserVM.getLogin()).build())
@@ -139,28 +156,61 @@ public class UserController {
     /**
      * GET /users : get all users.
      *
+     * <p>
+     * When the "after" parameter is present the keyset (cursor) mode is used:
+     * the users with an id greater than "after" are returned ordered by id, and
+     * the Link header points to the next cursor.
+     * </p>
+     *
      * @param page the pagination information
      * @param size the pagination size information
-     * @return the Response with status 200 (OK) and with body all users
+     * @param after the id of the last user of the previous page
+     * @param count how the total count is computed: exact (default), estimate
+     * or false to skip it
+     * @return the Response with status 200 (OK) and with body all users, or
+     * with status 304 (Not Modified)
      * @throws URISyntaxException if the pagination headers couldn't be
      * generated
      */
     @Timed
     @Operation(summary = "get all the users")
     @APIResponse(responseCode = "200", description = "OK")
+    @APIResponse(responseCode = "304", description = "Not Modified")
     @Path(value = "/users")
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     @Timeout
     @RolesAllowed(USER)
-    public Response getAllUsers(@QueryParam("page") int page, @QueryParam("size") int size) throws URISyntaxException {
+    public Response getAllUsers(@QueryParam("page") int page, @QueryParam("size") int size,
+            @QueryParam("after") Long after, @QueryParam("count") String count) throws URISyntaxException {
+        if (after != null) {
+            List<User> userList = userRepository.getUsersWithAuthoritiesAfter(after, size);
+            EntityTag etag = ETagUtil.forPage(userList, ETagUtil::forUser, "after", after, size);
+            ResponseBuilder builder = request.evaluatePreconditions(etag);
+            if (builder != null) {
+                return builder.build();
+            }
+            List<UserDTO> userDTOs = userList.stream()
+                    .map(UserDTO::new)
+                    .collect(toList());
+            builder = Response.ok(userDTOs).tag(etag);
+            Long nextCursor = userDTOs.isEmpty() ? null : userDTOs.get(userDTOs.size() - 1).getId();
+            PaginationUtil.generateCursorPaginationHttpHeaders(builder, size, userDTOs.size(), nextCursor, "/resources/api/users");
+            return builder.build();
+        }
         List<User> userList = userRepository.getUsersWithAuthorities(page * size, size);
+        Page pageInfo = new Page(page, size, CountMode.fromParameter(count).count(userRepository));
+        EntityTag etag = ETagUtil.forPage(userList, ETagUtil::forUser, page, size, pageInfo.getTotalElements());
+        ResponseBuilder builder = request.evaluatePreconditions(etag);
+        if (builder != null) {
+            return builder.build();
+        }
         List<UserDTO> userDTOs = userList.stream()
                 .map(UserDTO::new)
                 .collect(toList());
 
-        ResponseBuilder builder = Response.ok(userDTOs);
-        PaginationUtil.generatePaginationHttpHeaders(builder, new Page(page, size, userRepository.count()), "/resources/api/users");
+        builder = Response.ok(userDTOs).tag(etag);
+        PaginationUtil.generatePaginationHttpHeaders(builder, pageInfo, "/resources/api/users");
         return builder.build();
     }
 
@@ -182,11 +232,12 @@ public class UserController {
      *
      * @param login the login of the user to find
      * @return the Response with status 200 (OK) and with body the "login" user,
-     * or with status 404 (Not Found)
+     * or with status 304 (Not Modified), or with status 404 (Not Found)
      */
     @Timed
     @Operation(summary = "get the user")
     @APIResponse(responseCode = "200", description = "OK")
+    @APIResponse(responseCode = "304", description = "Not Modified")
     @APIResponse(responseCode = "404", description = "Not Found")
     @Path(value = "/users/{login}")
     @GET
@@ -195,8 +246,13 @@ public class UserController {
     public Response getUser(@PathParam("login") String login) {
         log.debug("REST request to get User : {}", login);
         return userService.getUserWithAuthoritiesByLogin(login)
-                .map(UserDTO::new)
-                .map(userDTO -> Response.ok(userDTO).build())
+                .map(user -> {
+                    EntityTag etag = ETagUtil.forUser(user);
+                    return Optional.ofNullable(request.evaluatePreconditions(etag))
+                            .orElseGet(() -> Response.ok(new UserDTO(user)))
+                            .tag(etag)
+                            .build();
+                })
                 .orElse(Response.status(NOT_FOUND).build());
     }
 
@@ -219,4 +275,30 @@ public class UserController {
         userService.deleteUser(login);
         return HeaderUtil.createAlert(Response.ok(), "userManagement.deleted", login).build();
     }
+
+    /**
+     * DELETE /users : delete the users by logins.
+     *
+     * @param logins the comma separated logins of the users to delete
+     * @return the Response with status 200 (OK) and with body the number of
+     * deleted users, or with status 400 (Bad Request) if no login is given
+     */
+    @Timed
+    @Operation(summary = "remove the users")
+    @APIResponse(responseCode = "200", description = "OK")
+    @APIResponse(responseCode = "400", description = "Bad Request")
+    @Path(value = "/users")
+    @DELETE
+    @Produces(MediaType.APPLICATION_JSON)
+    @RolesAllowed(ADMIN)
+    public Response deleteUsers(@QueryParam("logins") List<String> logins) {
+        List<String> values = ParameterUtil.splitValues(logins);
+        log.debug("REST request to delete Users: {}", values);
+        if (values.isEmpty()) {
+            return Response.status(BAD_REQUEST).build();
+        }
+        int deleted = userService.deleteUsers(values);
+        return HeaderUtil.createAlert(Response.ok(Json.createObjectBuilder().add("deleted", deleted).build()),
+                "userManagement.deleted", Integer.toString(deleted)).build();
+    }
 }
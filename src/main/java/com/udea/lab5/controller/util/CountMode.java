@@ -0,0 +1,51 @@
+package com.udea.lab5.controller.util;
+
+import com.udea.lab5.repository.AbstractRepository;
+
+/**
+ * How the total count of a paginated resource is computed, selected with the
+ * "count" query parameter.
+ */
+public enum CountMode {
+
+    /**
+     * Maintained counter, reconciled against the database when stale.
+     */
+    EXACT,
+    /**
+     * Maintained counter as is, it may lag behind the database.
+     */
+    ESTIMATE,
+    /**
+     * No total count, the X-Total-Count header is omitted.
+     */
+    NONE;
+
+    /**
+     * @param value the "count" query parameter
+     * @return the count mode, {@link #EXACT} if the value is absent or unknown
+     */
+    public static CountMode fromParameter(String value) {
+        if ("false".equalsIgnoreCase(value) || "none".equalsIgnoreCase(value)) {
+            return NONE;
+        } else if ("estimate".equalsIgnoreCase(value)) {
+            return ESTIMATE;
+        }
+        return EXACT;
+    }
+
+    /**
+     * @param repository the repository of the paginated entity
+     * @return the total count, or {@link Page#UNKNOWN_TOTAL} when not counted
+     */
+    public int count(AbstractRepository<?, ?> repository) {
+        switch (this) {
+            case NONE:
+                return Page.UNKNOWN_TOTAL;
+            case ESTIMATE:
+                return repository.estimateCount();
+            default:
+                return repository.count();
+        }
+    }
+}
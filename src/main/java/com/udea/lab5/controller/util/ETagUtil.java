@@ -0,0 +1,80 @@
+package com.udea.lab5.controller.util;
+
+import com.udea.lab5.com.udea.lab5.modelo.Authority;
+import com.udea.lab5.com.udea.lab5.modelo.User;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.function.Function;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.joining;
+import javax.ws.rs.core.EntityTag;
+
+/**
+ * Utility class for generating strong entity tags from the {@code @Version}
+ * column of the entities.
+ *
+ * <p>
+ * Used with {@code Request.evaluatePreconditions} to answer
+ * {@code If-None-Match} with 304 (Not Modified) before the body is serialized,
+ * and to reject a PUT with 412 (Precondition Failed) when its
+ * {@code If-Match} doesn't match the current version.</p>
+ */
+public final class ETagUtil {
+
+    private ETagUtil() {
+    }
+
+    /**
+     * @param id the primary key of the entity
+     * @param version the version of the entity
+     * @return the entity tag of one entity
+     */
+    public static EntityTag forVersion(Object id, Long version) {
+        return new EntityTag(id + "-" + version);
+    }
+
+    /**
+     * The authorities are part of the user representation but don't bump its
+     * version, so they are hashed into the tag.
+     *
+     * @param user the user, with its authorities
+     * @return the entity tag of the user
+     */
+    public static EntityTag forUser(User user) {
+        return new EntityTag(user.getId() + "-" + user.getVersion() + "-" + digest(user.getAuthorities().stream()
+                .map(Authority::getName)
+                .sorted()
+                .collect(joining(","))));
+    }
+
+    /**
+     * @param entities the entities of the page
+     * @param tag the entity tag of each entity
+     * @param pageParts what else identifies the page, like its number, size
+     * and total count
+     * @param <E> the entity type
+     * @return the entity tag of a page of entities
+     */
+    public static <E> EntityTag forPage(Collection<E> entities, Function<E, EntityTag> tag, Object... pageParts) {
+        StringBuilder value = new StringBuilder();
+        for (Object part : pageParts) {
+            value.append(part).append(';');
+        }
+        entities.forEach(entity -> value.append(tag.apply(entity).getValue()).append(';'));
+        return new EntityTag(digest(value.toString()));
+    }
+
+    private static String digest(String value) {
+        try {
+            byte[] hash = MessageDigest.getInstance("MD5").digest(value.getBytes(UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.udea.lab5.controller.util;
 
 public class Page {
 
+    public static final int UNKNOWN_TOTAL = -1;
+
     private int number;
     private int size;
     private int totalElements;
@@ -54,11 +56,18 @@ public class Page {
         this.size = size;
     }
 
+    /**
+     * @return true if the total number of elements has been counted
+     */
+    public boolean isTotalKnown() {
+        return totalElements != UNKNOWN_TOTAL;
+    }
+
     /**
      * @return the totalPages
      */
     public int getTotalPages() {
-        if (size == 0) {
+        if (size == 0 || !isTotalKnown()) {
             return 0;
         }
         if (totalElements % size == 0) {
@@ -19,6 +19,9 @@ public class PaginationUtil {
     public static ResponseBuilder generatePaginationHttpHeaders(ResponseBuilder builder, Page page, String baseUrl)
             throws URISyntaxException {
 
+        if (!page.isTotalKnown()) {
+            return generateUncountedPaginationHttpHeaders(builder, page, baseUrl);
+        }
         builder.header("X-Total-Count", Integer.toString(page.getTotalElements()));
         String link = "";
         if ((page.getNumber() + 1) < page.getTotalPages()) {
@@ -39,8 +42,52 @@ public class PaginationUtil {
         return builder;
     }
 
+    /**
+     * Without a total count there is no last page, the next link is always
+     * emitted and the client stops at the first empty page.
+     */
+    private static ResponseBuilder generateUncountedPaginationHttpHeaders(ResponseBuilder builder, Page page, String baseUrl)
+            throws URISyntaxException {
+
+        String link = "<" + generateUri(baseUrl, page.getNumber() + 1, page.getSize()) + ">; rel=\"next\",";
+        if ((page.getNumber()) > 0) {
+            link += "<" + generateUri(baseUrl, page.getNumber() - 1, page.getSize()) + ">; rel=\"prev\",";
+        }
+        link += "<" + generateUri(baseUrl, 0, page.getSize()) + ">; rel=\"first\"";
+        builder.header(HttpHeaders.LINK, link);
+        return builder;
+    }
+
+    /**
+     * Generates the Link header for keyset (cursor) pagination. A
+     * {@code rel="next"} link is only emitted when the current page is full,
+     * since a short page means there is nothing after it.
+     *
+     * @param builder the response builder
+     * @param size the page size
+     * @param pageElements the number of elements in the current page
+     * @param nextCursor the primary key of the last element of the current page
+     * @param baseUrl the base url of the resource
+     * @return the response builder
+     */
+    public static ResponseBuilder generateCursorPaginationHttpHeaders(ResponseBuilder builder, int size, int pageElements,
+            Object nextCursor, String baseUrl) {
+
+        if (nextCursor != null && pageElements >= size) {
+            builder.header(HttpHeaders.LINK, "<" + generateCursorUri(baseUrl, nextCursor, size) + ">; rel=\"next\"");
+        }
+        return builder;
+    }
+
+    private static String generateCursorUri(String baseUrl, Object after, int size) {
+        UriBuilder builder = UriBuilder.fromUri(baseUrl);
+        builder.queryParam("after", after);
+        builder.queryParam("size", size);
+        return builder.build().toString();
+    }
+
     private static String generateUri(String baseUrl, int page, int size) throws URISyntaxException {
-        UriBuilder builder = UriBuilder.fromPath(baseUrl);
+        UriBuilder builder = UriBuilder.fromUri(baseUrl);
         builder.queryParam("page", page);
         builder.queryParam("size", size);
         return builder.build().toString();
@@ -0,0 +1,31 @@
+package com.udea.lab5.controller.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Utility class for multi-valued query parameters.
+ */
+public class ParameterUtil {
+
+    /**
+     * Splits the comma separated values of a query parameter, which may also
+     * be repeated.
+     *
+     * @param parameters the values of the query parameter
+     * @return the non empty values
+     */
+    public static List<String> splitValues(List<String> parameters) {
+        List<String> values = new ArrayList<>();
+        if (parameters != null) {
+            for (String parameter : parameters) {
+                for (String value : parameter.split(",")) {
+                    if (!value.trim().isEmpty()) {
+                        values.add(value.trim());
+                    }
+                }
+            }
+        }
+        return values;
+    }
+}
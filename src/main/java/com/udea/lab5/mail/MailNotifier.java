@@ -3,25 +3,40 @@ package com.udea.lab5.mail;
 import com.udea.lab5.config.MailConfig;
 import com.udea.lab5.com.udea.lab5.modelo.User;
 import java.io.StringWriter;
+import java.util.List;
 import java.util.Locale;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Function;
+import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
-import javax.enterprise.event.ObservesAsync;
 import javax.inject.Inject;
-import org.apache.commons.mail.DefaultAuthenticator;
+import javax.mail.MessagingException;
+import org.apache.commons.mail.EmailException;
 import org.apache.commons.mail.HtmlEmail;
-import org.apache.deltaspike.core.api.message.Message;
-import org.apache.deltaspike.core.api.message.MessageContext;
 import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
 import org.apache.velocity.app.VelocityEngine;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.slf4j.Logger;
 
+/**
+ * Renders and sends the e-mails.
+ *
+ * <p>
+ * The compiled templates and the message bundles are cached, by template name
+ * and by language. Both are immutable once loaded and shared by concurrent
+ * senders.</p>
+ */
 @ApplicationScoped
 public class MailNotifier {
 
     private static final String USER = "user";
     private static final String BASE_URL = "baseUrl";
+    private static final String PROPS = "props";
+    private static final String MESSAGES = "i18n.messages";
+    private static final int CONTENT_CAPACITY = 4096;
 
     @Inject
     private Logger log;
@@ -30,53 +45,83 @@ public class MailNotifier {
     private VelocityEngine engine;
 
     @Inject
-    private MessageContext messageContext;
+    private MailConfig mailConfig;
 
     @Inject
-    private MailConfig mailConfig;
+    private SmtpTransportPool transportPool;
+
+    @Inject
+    @ConfigProperty(name = "service.mail.templates", defaultValue = "activationEmail,creationEmail,passwordResetEmail")
+    private List<String> templateNames;
+
+    private final ConcurrentMap<String, Template> templates = new ConcurrentHashMap<>();
 
-    public void sendEmail(@ObservesAsync MailEvent event) {
+    private final ConcurrentMap<String, Function<String, String>> messages = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        templateNames.forEach(this::getTemplate);
+    }
+
+    /**
+     * Renders and sends the e-mail, the caller retries it on failure.
+     *
+     * @param event the e-mail to send
+     * @throws EmailException if the e-mail could not be sent
+     */
+    public void send(MailEvent event) throws EmailException {
         if (!mailConfig.isEnable()) {
             log.debug("Mail servce is not enabled");
+            return;
         }
         String to = event.getUser().getEmail();
-        Message message = getMessage(event.getUser());
-        String subject = message.template(String.format("{%s}", event.getSubjectTemplate())).toString();
+        Function<String, String> message = getMessage(event.getUser());
+        String subject = message.apply(event.getSubjectTemplate());
         String content = getContent(event, message);
+        log.debug("Send e-mail to '{}' with subject '{}' and content={}", to, subject, content);
+        // Prepare message
+        HtmlEmail email = new HtmlEmail();
+        email.setMailSession(transportPool.getSession());
+        email.setFrom(mailConfig.getFrom());
+        email.setSubject(subject);
+        email.setHtmlMsg(content);
+        email.addTo(to);
+        email.buildMimeMessage();
         try {
-            log.debug("Send e-mail to '{}' with subject '{}' and content={}", to, subject, content);
-            // Prepare message
-            HtmlEmail email = new HtmlEmail();
-            email.setHostName(mailConfig.getHost());
-            email.setStartTLSEnabled(true);
-            email.setSmtpPort(mailConfig.getPort());
-            email.setAuthenticator(new DefaultAuthenticator(mailConfig.getUsername(), mailConfig.getPassword()));
-            email.setFrom(mailConfig.getFrom());
-            email.setSubject(subject);
-            email.setHtmlMsg(content);
-            email.addTo(to);
-            email.send();
-            log.debug("Sent e-mail to User '{}'", to);
-        } catch (Exception e) {
-            log.warn("e-mail could not be sent to user '{}', exception is: {}", to, e.getMessage());
+            // sent over a pooled connection instead of email.send()
+            transportPool.send(email.getMimeMessage());
+        } catch (MessagingException ex) {
+            throw new EmailException("Sending the email to the following server failed : "
+                    + mailConfig.getHost() + ":" + mailConfig.getPort(), ex);
         }
+        log.debug("Sent e-mail to User '{}'", to);
     }
 
-    private String getContent(MailEvent mailEvent, Message message) {
-        Template t = engine.getTemplate(String.format("mails/%s.html", mailEvent.getContentTemplate()));
+    private String getContent(MailEvent mailEvent, Function<String, String> message) {
+        Template t = getTemplate(mailEvent.getContentTemplate());
         VelocityContext context = new VelocityContext();
         context.put(USER, mailEvent.getUser());
         context.put(BASE_URL, mailConfig.getBaseUrl());
-        context.put("props", (Function<String, Message>) message::template);
-        StringWriter writer = new StringWriter();
+        context.put(PROPS, message);
+        StringWriter writer = new StringWriter(CONTENT_CAPACITY);
         t.merge(context, writer);
         return writer.toString();
     }
 
-    private Message getMessage(User user) {
-        return messageContext.messageSource("i18n.messages")
-                .localeResolver(() -> Locale.forLanguageTag(user.getLangKey()))
-                .message();
+    private Template getTemplate(String name) {
+        return templates.computeIfAbsent(name, key -> engine.getTemplate(String.format("mails/%s.html", key)));
+    }
+
+    /**
+     * @return the lookup of the messages in the language of the user, a
+     * missing key renders as {@code ??key??}
+     */
+    private Function<String, String> getMessage(User user) {
+        String langKey = user.getLangKey() == null ? "" : user.getLangKey();
+        return messages.computeIfAbsent(langKey, key -> {
+            ResourceBundle bundle = ResourceBundle.getBundle(MESSAGES, Locale.forLanguageTag(key));
+            return name -> bundle.containsKey(name) ? bundle.getString(name) : "??" + name + "??";
+        });
     }
 
 }
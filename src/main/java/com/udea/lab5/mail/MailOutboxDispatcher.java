@@ -0,0 +1,320 @@
+package com.udea.lab5.mail;
+
+import com.udea.lab5.com.udea.lab5.modelo.MailOutbox;
+import com.udea.lab5.com.udea.lab5.modelo.User;
+import com.udea.lab5.metrics.MeteredExecutor;
+import com.udea.lab5.repository.MailOutboxRepository;
+import com.udea.lab5.repository.UserRepository;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.Timeout;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerService;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.Histogram;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Timer;
+import org.slf4j.Logger;
+
+/**
+ * Sends the e-mails of the outbox in the background.
+ *
+ * <p>
+ * The outbox is polled at a fixed interval, and right away once a transaction
+ * queuing an e-mail commits. Due e-mails are claimed in batches and sent on a
+ * dedicated bounded pool, so slow SMTP calls don't hold up other work; a
+ * failed one is retried with an exponential backoff until it uses up its
+ * attempts. When the pool queue is full the {@link QueueFullPolicy} applies.</p>
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class MailOutboxDispatcher {
+
+    private static final String MAIL_OUTBOX = "mail.outbox.";
+
+    private static final int MAX_ERROR_LENGTH = 255;
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private MailOutboxRepository mailOutboxRepository;
+
+    @Inject
+    private UserRepository userRepository;
+
+    @Inject
+    private MailNotifier mailNotifier;
+
+    @Inject
+    private MetricRegistry registry;
+
+    @Resource
+    private TimerService timerService;
+
+    @Resource
+    private ManagedThreadFactory threadFactory;
+
+    @Inject
+    @ConfigProperty(name = "mail.outbox.pollIntervalInSeconds", defaultValue = "30")
+    private long pollIntervalInSeconds;
+
+    @Inject
+    @ConfigProperty(name = "mail.outbox.batchSize", defaultValue = "50")
+    private int batchSize;
+
+    @Inject
+    @ConfigProperty(name = "mail.outbox.maxAttempts", defaultValue = "8")
+    private int maxAttempts;
+
+    @Inject
+    @ConfigProperty(name = "mail.outbox.initialBackoffInSeconds", defaultValue = "30")
+    private long initialBackoffInSeconds;
+
+    @Inject
+    @ConfigProperty(name = "mail.outbox.maxBackoffInSeconds", defaultValue = "3600")
+    private long maxBackoffInSeconds;
+
+    @Inject
+    @ConfigProperty(name = "mail.outbox.leaseInSeconds", defaultValue = "300")
+    private long leaseInSeconds;
+
+    @Inject
+    @ConfigProperty(name = "mail.executor.threads", defaultValue = "2")
+    private int threads;
+
+    @Inject
+    @ConfigProperty(name = "mail.executor.queueCapacity", defaultValue = "50")
+    private int queueCapacity;
+
+    @Inject
+    @ConfigProperty(name = "mail.executor.queueFullPolicy", defaultValue = "spill")
+    private String queueFullPolicy;
+
+    @Inject
+    @ConfigProperty(name = "mail.executor.sendTimeoutInSeconds", defaultValue = "180")
+    private long sendTimeoutInSeconds;
+
+    @Inject
+    @ConfigProperty(name = "mail.executor.retryAfterInSeconds", defaultValue = "30")
+    private long retryAfterInSeconds;
+
+    private QueueFullPolicy policy;
+
+    private MeteredExecutor executor;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final AtomicLong pending = new AtomicLong();
+
+    private Counter sent;
+
+    private Counter failures;
+
+    private Counter dead;
+
+    private Histogram latency;
+
+    private Timer sendTime;
+
+    @PostConstruct
+    public void init() {
+        policy = QueueFullPolicy.valueOf(queueFullPolicy.toUpperCase());
+        executor = new MeteredExecutor("mail", threads, queueCapacity, retryAfterInSeconds, threadFactory, registry);
+        sent = registry.counter(MAIL_OUTBOX + "sent");
+        failures = registry.counter(MAIL_OUTBOX + "failures");
+        dead = registry.counter(MAIL_OUTBOX + "dead");
+        latency = registry.histogram(MAIL_OUTBOX + "latency");
+        sendTime = registry.timer(MAIL_OUTBOX + "sendTime");
+        String pendingMetric = MAIL_OUTBOX + "pending";
+        if (!registry.getGauges().containsKey(pendingMetric)) {
+            registry.register(pendingMetric, (Gauge<Long>) pending::get);
+        }
+        long interval = TimeUnit.SECONDS.toMillis(pollIntervalInSeconds);
+        timerService.createIntervalTimer(interval, interval, new TimerConfig(null, false));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    /**
+     * Wakes the dispatcher up once the transaction queuing the e-mail has
+     * committed.
+     *
+     * @param mail the queued e-mail
+     */
+    public void onMailQueued(@Observes(during = TransactionPhase.AFTER_SUCCESS) MailOutbox mail) {
+        timerService.createSingleActionTimer(1, new TimerConfig(null, false));
+    }
+
+    @Timeout
+    public void dispatch() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            boolean more;
+            do {
+                Instant now = Instant.now();
+                List<MailOutbox> batch = mailOutboxRepository.claimDue(now, batchSize, now.plusSeconds(leaseInSeconds));
+                more = sendBatch(batch) && batch.size() == batchSize;
+            } while (more);
+            pending.set(mailOutboxRepository.countPending());
+        } catch (RuntimeException ex) {
+            log.error("Mail outbox dispatch failed", ex);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Sends the batch on the mail executor and waits for it. The outbox rows
+     * are only read and written on the calling thread, the executor threads
+     * just render and send.
+     *
+     * @return false if e-mails were spilled back to the outbox, so the poll
+     * should stop
+     */
+    private boolean sendBatch(List<MailOutbox> batch) {
+        List<Long> done = new ArrayList<>(batch.size());
+        List<MailOutbox> queued = new ArrayList<>(batch.size());
+        List<Future<?>> results = new ArrayList<>(batch.size());
+        List<MailOutbox> spilled = new ArrayList<>();
+        for (MailOutbox mail : batch) {
+            User user = userRepository.find(mail.getUserId());
+            if (user == null) {
+                log.debug("Dropped e-mail {} of a deleted user", mail.getId());
+                done.add(mail.getId());
+                continue;
+            }
+            if (!spilled.isEmpty()) {
+                spilled.add(mail);
+                continue;
+            }
+            MailEvent event = new MailEvent(user, mail.getSubjectTemplate(), mail.getContentTemplate());
+            Future<?> result = submit(event, results);
+            if (result != null) {
+                queued.add(mail);
+                results.add(result);
+            } else if (policy == QueueFullPolicy.SHED) {
+                shed(mail);
+            } else {
+                spilled.add(mail);
+            }
+        }
+        for (int i = 0; i < queued.size(); i++) {
+            MailOutbox mail = queued.get(i);
+            try {
+                results.get(i).get(sendTimeoutInSeconds, TimeUnit.SECONDS);
+                sent.inc();
+                latency.update(Duration.between(mail.getCreatedDate(), Instant.now()).toMillis());
+                done.add(mail.getId());
+            } catch (ExecutionException ex) {
+                failures.inc();
+                retryLater(mail, ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex);
+            } catch (TimeoutException ex) {
+                results.get(i).cancel(true);
+                failures.inc();
+                retryLater(mail, new TimeoutException("Not sent after " + sendTimeoutInSeconds + "s"));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                spilled.add(mail);
+            }
+        }
+        if (!done.isEmpty()) {
+            mailOutboxRepository.removeAll(done);
+        }
+        Instant now = Instant.now();
+        for (MailOutbox mail : spilled) {
+            mail.setNextAttemptAt(now);
+            mailOutboxRepository.edit(mail);
+        }
+        return spilled.isEmpty();
+    }
+
+    /**
+     * @return the pending send, or null if the executor queue is full and the
+     * policy isn't to block
+     */
+    private Future<?> submit(MailEvent event, List<Future<?>> inFlight) {
+        int waitingFor = 0;
+        while (true) {
+            try {
+                return executor.submit(() -> {
+                    Timer.Context context = sendTime.time();
+                    try {
+                        mailNotifier.send(event);
+                    } finally {
+                        context.stop();
+                    }
+                    return null;
+                });
+            } catch (RejectedExecutionException ex) {
+                if (policy != QueueFullPolicy.BLOCK || waitingFor >= inFlight.size()) {
+                    return null;
+                }
+                try {
+                    inFlight.get(waitingFor++).get(sendTimeoutInSeconds, TimeUnit.SECONDS);
+                } catch (ExecutionException | TimeoutException sendFailure) {
+                    // handled with the rest of the batch
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+        }
+    }
+
+    private void shed(MailOutbox mail) {
+        mail.setFailed(true);
+        mail.setLastError("Shed, the mail executor queue was full");
+        dead.inc();
+        log.warn("e-mail {} shed, the mail executor queue was full", mail.getId());
+        mailOutboxRepository.edit(mail);
+    }
+
+    private void retryLater(MailOutbox mail, Exception ex) {
+        int attempts = mail.getAttempts() + 1;
+        mail.setAttempts(attempts);
+        String error = String.valueOf(ex.getMessage());
+        mail.setLastError(error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+        if (attempts >= maxAttempts) {
+            mail.setFailed(true);
+            dead.inc();
+            log.warn("e-mail {} could not be sent after {} attempts: {}", mail.getId(), attempts, error);
+        } else {
+            long backoff = Math.min(maxBackoffInSeconds, initialBackoffInSeconds << Math.min(attempts - 1, 30));
+            mail.setNextAttemptAt(Instant.now().plusSeconds(backoff));
+            log.debug("e-mail {} failed, attempt {} in {}s: {}", mail.getId(), attempts + 1, backoff, error);
+        }
+        mailOutboxRepository.edit(mail);
+    }
+}
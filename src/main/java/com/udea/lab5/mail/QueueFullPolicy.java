@@ -0,0 +1,21 @@
+package com.udea.lab5.mail;
+
+/**
+ * What the {@link MailOutboxDispatcher} does with an e-mail when the mail
+ * executor queue is full.
+ */
+public enum QueueFullPolicy {
+
+    /**
+     * Waits for a queued e-mail to be sent, then queues it.
+     */
+    BLOCK,
+    /**
+     * Drops it, the outbox row is marked as failed.
+     */
+    SHED,
+    /**
+     * Leaves it in the outbox, it is sent on a later poll.
+     */
+    SPILL
+}
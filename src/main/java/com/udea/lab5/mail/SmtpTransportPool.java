@@ -0,0 +1,228 @@
+package com.udea.lab5.mail;
+
+import com.udea.lab5.config.MailConfig;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.slf4j.Logger;
+
+/**
+ * Pool of authenticated SMTP connections, so that many e-mails are sent over
+ * one STARTTLS handshake and login.
+ *
+ * <p>
+ * The number of open connections is bounded to stay within the provider
+ * limits. A connection idle for longer than the timeout is closed, and a
+ * connection that fails is dropped and the e-mail retried once on a new
+ * one.</p>
+ */
+@ApplicationScoped
+public class SmtpTransportPool {
+
+    private static final String MAIL_SMTP = "mail.smtp.";
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private MailConfig mailConfig;
+
+    @Inject
+    private MetricRegistry registry;
+
+    @Inject
+    @ConfigProperty(name = "service.mail.pool.maxConnections", defaultValue = "2")
+    private int maxConnections;
+
+    @Inject
+    @ConfigProperty(name = "service.mail.pool.idleTimeoutInSeconds", defaultValue = "30")
+    private long idleTimeoutInSeconds;
+
+    @Inject
+    @ConfigProperty(name = "service.mail.pool.borrowTimeoutInSeconds", defaultValue = "60")
+    private long borrowTimeoutInSeconds;
+
+    @Inject
+    @ConfigProperty(name = "service.mail.pool.connectionTimeoutInMillis", defaultValue = "60000")
+    private long connectionTimeoutInMillis;
+
+    @Inject
+    @ConfigProperty(name = "service.mail.pool.readTimeoutInMillis", defaultValue = "60000")
+    private long readTimeoutInMillis;
+
+    @Inject
+    @ConfigProperty(name = "service.mail.pool.writeTimeoutInMillis", defaultValue = "60000")
+    private long writeTimeoutInMillis;
+
+    private Session session;
+
+    private Semaphore permits;
+
+    private final BlockingDeque<PooledTransport> idle = new LinkedBlockingDeque<>();
+
+    private Counter opened;
+
+    private Counter reconnects;
+
+    @PostConstruct
+    public void init() {
+        Properties properties = new Properties();
+        properties.setProperty("mail.transport.protocol", "smtp");
+        properties.setProperty("mail.smtp.host", mailConfig.getHost());
+        properties.setProperty("mail.smtp.port", String.valueOf(mailConfig.getPort()));
+        properties.setProperty("mail.smtp.auth", "true");
+        properties.setProperty("mail.smtp.starttls.enable", "true");
+        // finite socket timeouts, so a hung server can't hold a connection forever
+        properties.setProperty("mail.smtp.connectiontimeout", String.valueOf(connectionTimeoutInMillis));
+        properties.setProperty("mail.smtp.timeout", String.valueOf(readTimeoutInMillis));
+        properties.setProperty("mail.smtp.writetimeout", String.valueOf(writeTimeoutInMillis));
+        session = Session.getInstance(properties);
+        permits = new Semaphore(maxConnections, true);
+
+        opened = registry.counter(MAIL_SMTP + "connections.opened");
+        reconnects = registry.counter(MAIL_SMTP + "reconnects");
+        String idleMetric = MAIL_SMTP + "connections.idle";
+        if (!registry.getGauges().containsKey(idleMetric)) {
+            registry.register(idleMetric, (Gauge<Integer>) idle::size);
+        }
+    }
+
+    /**
+     * @return the session the e-mails are built with
+     */
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     * Sends the e-mail over a pooled connection, waiting for one when all of
+     * them are in use.
+     *
+     * @param message the e-mail to send
+     * @throws MessagingException if the e-mail could not be sent, even on a
+     * new connection
+     */
+    public void send(MimeMessage message) throws MessagingException {
+        try {
+            if (!permits.tryAcquire(borrowTimeoutInSeconds, TimeUnit.SECONDS)) {
+                throw new MessagingException("No SMTP connection available after " + borrowTimeoutInSeconds + "s");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted while waiting for an SMTP connection", ex);
+        }
+        try {
+            PooledTransport transport = borrow();
+            try {
+                transport.send(message);
+            } catch (SendFailedException ex) {
+                // rejected recipients, the connection itself is fine
+                release(transport);
+                throw ex;
+            } catch (MessagingException ex) {
+                log.debug("SMTP connection failed, reconnecting: {}", ex.getMessage());
+                transport.close();
+                reconnects.inc();
+                transport = connect();
+                try {
+                    transport.send(message);
+                } catch (MessagingException retryEx) {
+                    transport.close();
+                    throw retryEx;
+                }
+            }
+            release(transport);
+        } finally {
+            permits.release();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        PooledTransport transport;
+        while ((transport = idle.pollFirst()) != null) {
+            transport.close();
+        }
+    }
+
+    /**
+     * Takes the most recently used connection, closing the ones that have been
+     * idle for too long.
+     */
+    private PooledTransport borrow() throws MessagingException {
+        long idleTimeout = TimeUnit.SECONDS.toMillis(idleTimeoutInSeconds);
+        PooledTransport transport;
+        while ((transport = idle.pollFirst()) != null) {
+            if (!transport.isIdleFor(idleTimeout) && transport.transport.isConnected()) {
+                return transport;
+            }
+            transport.close();
+        }
+        return connect();
+    }
+
+    private void release(PooledTransport transport) {
+        transport.lastUsed = System.currentTimeMillis();
+        idle.offerFirst(transport);
+        long idleTimeout = TimeUnit.SECONDS.toMillis(idleTimeoutInSeconds);
+        for (Iterator<PooledTransport> it = idle.descendingIterator(); it.hasNext();) {
+            PooledTransport oldest = it.next();
+            if (!oldest.isIdleFor(idleTimeout)) {
+                break;
+            }
+            if (idle.removeLastOccurrence(oldest)) {
+                oldest.close();
+            }
+        }
+    }
+
+    private PooledTransport connect() throws MessagingException {
+        Transport transport = session.getTransport();
+        transport.connect(mailConfig.getHost(), mailConfig.getPort(), mailConfig.getUsername(), mailConfig.getPassword());
+        opened.inc();
+        log.debug("Opened SMTP connection to {}:{}", mailConfig.getHost(), mailConfig.getPort());
+        return new PooledTransport(transport);
+    }
+
+    private class PooledTransport {
+
+        private final Transport transport;
+        private long lastUsed = System.currentTimeMillis();
+
+        PooledTransport(Transport transport) {
+            this.transport = transport;
+        }
+
+        void send(MimeMessage message) throws MessagingException {
+            transport.sendMessage(message, message.getAllRecipients());
+        }
+
+        boolean isIdleFor(long millis) {
+            return System.currentTimeMillis() - lastUsed > millis;
+        }
+
+        void close() {
+            try {
+                transport.close();
+            } catch (MessagingException ex) {
+                log.debug("Failed to close SMTP connection: {}", ex.getMessage());
+            }
+        }
+    }
+}
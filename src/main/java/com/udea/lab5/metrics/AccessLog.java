@@ -0,0 +1,259 @@
+package com.udea.lab5.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.slf4j.Logger;
+
+/**
+ * Access log written off the request threads.
+ *
+ * <p>
+ * Request threads claim a slot of a pre-allocated ring buffer, fill it in and
+ * publish it, without locking or allocating. One background thread drains the
+ * buffer and appends the entries to the file in batches. When the buffer is
+ * full the entry is dropped and counted, the request never waits for the
+ * disk.</p>
+ *
+ * <p>
+ * One line per request, as space separated {@code key=value} pairs:</p>
+ * <pre>
+ * ts=2020-05-01T10:15:30.123Z id=k2x-1f ip=10.0.0.1 m=GET p=/resources/api/persona/7 r="GET /api/persona/{id}" s=200 us=1834 in=0 out=412
+ * </pre>
+ */
+@ApplicationScoped
+public class AccessLog {
+
+    private static final String ACCESS_LOG = "accesslog.";
+
+    private static final int MAX_BATCH = 512;
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private MetricRegistry registry;
+
+    @Resource
+    private ManagedThreadFactory threadFactory;
+
+    @Inject
+    @ConfigProperty(name = "accesslog.enabled", defaultValue = "true")
+    private volatile boolean enabled;
+
+    @Inject
+    @ConfigProperty(name = "accesslog.file", defaultValue = "logs/access.log")
+    private String file;
+
+    @Inject
+    @ConfigProperty(name = "accesslog.bufferSize", defaultValue = "8192")
+    private int bufferSize;
+
+    private Entry[] entries;
+
+    /**
+     * The sequence number published in each slot, -1 until the first one.
+     */
+    private AtomicLongArray published;
+
+    private int mask;
+
+    private final AtomicLong claimed = new AtomicLong();
+
+    private final AtomicLong consumed = new AtomicLong();
+
+    private volatile boolean running;
+
+    private Thread writerThread;
+
+    private Counter dropped;
+
+    private Counter written;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        int capacity = Integer.highestOneBit(Math.max(2, bufferSize - 1)) << 1;
+        entries = new Entry[capacity];
+        published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            entries[i] = new Entry();
+            published.set(i, -1);
+        }
+        mask = capacity - 1;
+
+        dropped = registry.counter(ACCESS_LOG + "dropped");
+        written = registry.counter(ACCESS_LOG + "written");
+        String queuedMetric = ACCESS_LOG + "queued";
+        if (!registry.getGauges().containsKey(queuedMetric)) {
+            registry.register(queuedMetric, (Gauge<Long>) () -> claimed.get() - consumed.get());
+        }
+
+        Writer writer;
+        try {
+            Path path = Paths.get(file).toAbsolutePath();
+            Files.createDirectories(path.getParent());
+            writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            log.debug("Writing the access log to {}", path);
+        } catch (IOException ex) {
+            log.error("Access log disabled, {} can't be opened: {}", file, ex.getMessage());
+            enabled = false;
+            return;
+        }
+        running = true;
+        writerThread = threadFactory.newThread(() -> drain(writer));
+        writerThread.start();
+    }
+
+    @PreDestroy
+    public void close() {
+        if (writerThread == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queues the access log entry of a completed request, or drops it if the
+     * buffer is full.
+     */
+    public void log(String requestId, String remoteAddr, String method, String path, String route,
+            int status, long nanos, long requestBytes, long responseBytes) {
+        if (!enabled) {
+            return;
+        }
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed.get() >= entries.length) {
+                dropped.inc();
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        int slot = (int) (sequence & mask);
+        Entry entry = entries[slot];
+        entry.timestamp = System.currentTimeMillis();
+        entry.requestId = requestId;
+        entry.remoteAddr = remoteAddr;
+        entry.method = method;
+        entry.path = path;
+        entry.route = route;
+        entry.status = status;
+        entry.micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        entry.requestBytes = requestBytes;
+        entry.responseBytes = responseBytes;
+        published.lazySet(slot, sequence);
+    }
+
+    /**
+     * The writer loop: formats the published entries in order, writes and
+     * flushes them in one batch, and parks while the buffer is empty.
+     */
+    private void drain(Writer writer) {
+        StringBuilder line = new StringBuilder(256);
+        long next = consumed.get();
+        try {
+            while (running || next < claimed.get()) {
+                int batch = 0;
+                while (batch < MAX_BATCH && published.get((int) (next & mask)) == next) {
+                    Entry entry = entries[(int) (next & mask)];
+                    line.setLength(0);
+                    entry.format(line);
+                    entry.clear();
+                    consumed.lazySet(++next);
+                    writer.append(line);
+                    batch++;
+                }
+                if (batch > 0) {
+                    written.inc(batch);
+                    writer.flush();
+                } else if (running) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                } else if (next < claimed.get()) {
+                    // a request is still filling its slot
+                    Thread.yield();
+                }
+            }
+            writer.flush();
+        } catch (IOException ex) {
+            log.error("Access log writer stopped: {}", ex.getMessage());
+            enabled = false;
+        } finally {
+            try {
+                writer.close();
+            } catch (IOException ex) {
+                log.debug("Failed to close the access log: {}", ex.getMessage());
+            }
+        }
+    }
+
+    private static class Entry {
+
+        private long timestamp;
+        private String requestId;
+        private String remoteAddr;
+        private String method;
+        private String path;
+        private String route;
+        private int status;
+        private long micros;
+        private long requestBytes;
+        private long responseBytes;
+
+        void format(StringBuilder line) {
+            line.append("ts=").append(Instant.ofEpochMilli(timestamp))
+                    .append(" id=").append(requestId == null ? "-" : requestId)
+                    .append(" ip=").append(remoteAddr)
+                    .append(" m=").append(method)
+                    .append(" p=").append(path)
+                    .append(" r=\"").append(route == null ? RouteMetrics.OTHER : route).append('"')
+                    .append(" s=").append(status)
+                    .append(" us=").append(micros)
+                    .append(" in=").append(requestBytes)
+                    .append(" out=").append(responseBytes)
+                    .append('\n');
+        }
+
+        /**
+         * Drops the references so the slot doesn't keep the strings alive.
+         */
+        void clear() {
+            requestId = null;
+            remoteAddr = null;
+            method = null;
+            path = null;
+            route = null;
+        }
+    }
+}
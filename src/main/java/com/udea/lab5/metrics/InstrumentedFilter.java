@@ -6,12 +6,14 @@ import java.util.concurrent.ConcurrentMap;
 import javax.inject.Inject;
 import javax.servlet.AsyncEvent;
 import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import org.eclipse.microprofile.metrics.Counter;
 import org.eclipse.microprofile.metrics.Meter;
@@ -22,6 +24,12 @@ public class InstrumentedFilter implements Filter {
 
     @Inject
     private MetricRegistry registry;
+    @Inject
+    private RouteMetrics routeMetrics;
+    @Inject
+    private RequestTracer tracer;
+    @Inject
+    private AccessLog accessLog;
     private ConcurrentMap<Integer, Meter> statusCodeMeters;
     private Meter otherMeter;
     private Meter timeoutsMeter;
@@ -50,6 +58,8 @@ public class InstrumentedFilter implements Filter {
     private static final String ACTIVE_REQUESTS_METRICS = INSTRUMENTED_FILTER + "activeRequests";
     private static final String REQUESTS_METRICS = INSTRUMENTED_FILTER + "requests";
 
+    public static final String REQUEST_ID_HEADER = "X-Request-Id";
+
     @Override
     public void init(FilterConfig filterConfig) throws ServletException {
         statusCodeMeters = new ConcurrentHashMap<>();
@@ -70,17 +80,25 @@ public class InstrumentedFilter implements Filter {
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
         activeRequests.inc();
         final Timer.Context context = requestTimer.time();
+        final long start = System.nanoTime();
+        final CountingResponseWrapper countingResponse = new CountingResponseWrapper((HttpServletResponse) response);
+        final RequestTrace trace = startTrace(request, countingResponse);
+        final boolean initial = request.getDispatcherType() == DispatcherType.REQUEST;
         boolean error = false;
         try {
-            chain.doFilter(request, response);
+            chain.doFilter(request, countingResponse);
         } catch (IOException | RuntimeException | ServletException e) {
             error = true;
             throw e;
         } finally {
             if (!error && request.isAsyncStarted()) {
-                request.getAsyncContext().addListener(new AsyncResultListener(context));
+                request.getAsyncContext().addListener(new AsyncResultListener(context, request, countingResponse, start, trace, initial));
+                if (trace != null) {
+                    tracer.detach();
+                }
             } else {
                 context.stop();
+                complete(request, countingResponse, start, trace, initial, error ? SERVER_ERROR : countingResponse.getStatus());
                 activeRequests.dec();
                 if (error) {
                     errorsMeter.mark();
@@ -100,6 +118,46 @@ public class InstrumentedFilter implements Filter {
         }
     }
 
+    /**
+     * Starts the trace of the request, once for the initial dispatch, and
+     * returns its id to the client.
+     */
+    private RequestTrace startTrace(ServletRequest request, HttpServletResponse response) {
+        if (request.getDispatcherType() != DispatcherType.REQUEST || tracer.current() != null) {
+            return null;
+        }
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        RequestTrace trace = tracer.start(httpRequest, httpRequest.getHeader(REQUEST_ID_HEADER));
+        if (trace != null) {
+            response.setHeader(REQUEST_ID_HEADER, trace.getId());
+        }
+        return trace;
+    }
+
+    /**
+     * Records the completed request in the route metrics, the trace and, for
+     * the initial dispatch, the access log.
+     */
+    private void complete(ServletRequest request, CountingResponseWrapper response, long start, RequestTrace trace,
+            boolean initial, int status) {
+        long nanos = System.nanoTime() - start;
+        RouteMetrics.Route route = (RouteMetrics.Route) request.getAttribute(RouteFilter.ROUTE);
+        long requestBytes = Math.max(0, request.getContentLengthLong());
+        routeMetrics.record(route, nanos, requestBytes, response.getCount());
+        String routeName = route == null ? null : route.name;
+        if (trace != null) {
+            if (tracer.current() == trace) {
+                tracer.detach();
+            }
+            tracer.finish(trace, routeName, status);
+        }
+        if (initial) {
+            HttpServletRequest httpRequest = (HttpServletRequest) request;
+            accessLog.log(trace == null ? null : trace.getId(), request.getRemoteAddr(), httpRequest.getMethod(),
+                    httpRequest.getRequestURI(), routeName, status, nanos, requestBytes, response.getCount());
+        }
+    }
+
     @Override
     public void destroy() {
     }
@@ -107,10 +165,21 @@ public class InstrumentedFilter implements Filter {
     private class AsyncResultListener implements AsyncListener {
 
         private final Timer.Context context;
+        private final ServletRequest request;
+        private final CountingResponseWrapper countingResponse;
+        private final long start;
+        private final RequestTrace trace;
+        private final boolean initial;
         private boolean done = false;
 
-        public AsyncResultListener(Timer.Context context) {
+        public AsyncResultListener(Timer.Context context, ServletRequest request, CountingResponseWrapper countingResponse,
+                long start, RequestTrace trace, boolean initial) {
             this.context = context;
+            this.request = request;
+            this.countingResponse = countingResponse;
+            this.start = start;
+            this.trace = trace;
+            this.initial = initial;
         }
 
         @Override
@@ -118,6 +187,7 @@ public class InstrumentedFilter implements Filter {
             if (!done) {
                 HttpServletResponse response = (HttpServletResponse) event.getSuppliedResponse();
                 context.stop();
+                complete(request, countingResponse, start, trace, initial, response.getStatus());
                 activeRequests.dec();
                 markStatusCodeMeter(response.getStatus());
             }
@@ -126,6 +196,7 @@ public class InstrumentedFilter implements Filter {
         @Override
         public void onTimeout(AsyncEvent event) throws IOException {
             context.stop();
+            complete(request, countingResponse, start, trace, initial, 0);
             activeRequests.dec();
             timeoutsMeter.mark();
             done = true;
@@ -134,6 +205,7 @@ public class InstrumentedFilter implements Filter {
         @Override
         public void onError(AsyncEvent event) throws IOException {
             context.stop();
+            complete(request, countingResponse, start, trace, initial, SERVER_ERROR);
             activeRequests.dec();
             errorsMeter.mark();
             done = true;
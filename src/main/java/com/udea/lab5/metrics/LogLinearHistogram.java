@@ -0,0 +1,228 @@
+package com.udea.lab5.metrics;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import org.eclipse.microprofile.metrics.Histogram;
+import org.eclipse.microprofile.metrics.Snapshot;
+
+/**
+ * A histogram with fixed log-linear buckets, in the manner of HdrHistogram:
+ * each power of two is split in {@value #SUB_BUCKETS} linear sub-buckets, so a
+ * recorded value is off by less than 1.6%.
+ *
+ * <p>
+ * Recording is lock-free and allocation-free, one atomic increment of the
+ * bucket. The memory is fixed whatever the values recorded. The quantiles
+ * cover the current and the previous window, so they follow recent changes,
+ * while the count covers the whole lifetime.</p>
+ */
+public class LogLinearHistogram implements Histogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_VALUE_BITS = 40;
+    private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    private static final int BUCKETS = (MAX_VALUE_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final long windowMillis;
+    private final LongAdder count = new LongAdder();
+    private volatile AtomicLongArray current = new AtomicLongArray(BUCKETS);
+    private volatile AtomicLongArray previous = new AtomicLongArray(BUCKETS);
+    private volatile long windowStart = System.currentTimeMillis();
+
+    /**
+     * @param windowMillis the length of a quantile window
+     */
+    public LogLinearHistogram(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    @Override
+    public void update(int value) {
+        update((long) value);
+    }
+
+    @Override
+    public void update(long value) {
+        rotate();
+        current.incrementAndGet(index(Math.min(Math.max(value, 0), MAX_VALUE)));
+        count.increment();
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public Snapshot getSnapshot() {
+        rotate();
+        AtomicLongArray recent = current;
+        AtomicLongArray older = previous;
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = recent.get(i) + older.get(i);
+        }
+        return new BucketSnapshot(counts);
+    }
+
+    /**
+     * Starts a new window once the current one is over. A value recorded
+     * during the swap lands in either window, it isn't lost.
+     */
+    private void rotate() {
+        long now = System.currentTimeMillis();
+        if (now - windowStart < windowMillis) {
+            return;
+        }
+        synchronized (this) {
+            if (now - windowStart < windowMillis) {
+                return;
+            }
+            previous = now - windowStart < 2 * windowMillis ? current : new AtomicLongArray(BUCKETS);
+            current = new AtomicLongArray(BUCKETS);
+            windowStart = now;
+        }
+    }
+
+    static int index(long value) {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * @return the lowest value of the bucket
+     */
+    static long lowestValue(int index) {
+        int shift = Math.max(0, (index >> SUB_BUCKET_BITS) - 1);
+        return (long) (index - (shift << SUB_BUCKET_BITS)) << shift;
+    }
+
+    /**
+     * @return the middle value of the bucket, used as the value of all the
+     * samples in it
+     */
+    static long medianValue(int index) {
+        long lowest = lowestValue(index);
+        long next = index + 1 < BUCKETS ? lowestValue(index + 1) : MAX_VALUE + 1;
+        return lowest + (next - lowest - 1) / 2;
+    }
+
+    private static class BucketSnapshot extends Snapshot {
+
+        private final long[] counts;
+        private final long size;
+        private final int first;
+        private final int last;
+
+        BucketSnapshot(long[] counts) {
+            this.counts = counts;
+            long total = 0;
+            int firstIndex = -1;
+            int lastIndex = -1;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    total += counts[i];
+                    lastIndex = i;
+                    if (firstIndex < 0) {
+                        firstIndex = i;
+                    }
+                }
+            }
+            this.size = total;
+            this.first = firstIndex;
+            this.last = lastIndex;
+        }
+
+        @Override
+        public double getValue(double quantile) {
+            if (size == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(Math.min(Math.max(quantile, 0), 1) * size));
+            long seen = 0;
+            for (int i = first; i <= last; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return medianValue(i);
+                }
+            }
+            return medianValue(last);
+        }
+
+        /**
+         * @return the value of each non-empty bucket, not every sample
+         */
+        @Override
+        public long[] getValues() {
+            if (size == 0) {
+                return new long[0];
+            }
+            long[] values = new long[last - first + 1];
+            int n = 0;
+            for (int i = first; i <= last; i++) {
+                if (counts[i] > 0) {
+                    values[n++] = medianValue(i);
+                }
+            }
+            return Arrays.copyOf(values, n);
+        }
+
+        @Override
+        public int size() {
+            return (int) Math.min(size, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public long getMax() {
+            return size == 0 ? 0 : medianValue(last);
+        }
+
+        @Override
+        public long getMin() {
+            return size == 0 ? 0 : medianValue(first);
+        }
+
+        @Override
+        public double getMean() {
+            if (size == 0) {
+                return 0;
+            }
+            double sum = 0;
+            for (int i = first; i <= last; i++) {
+                sum += (double) counts[i] * medianValue(i);
+            }
+            return sum / size;
+        }
+
+        @Override
+        public double getStdDev() {
+            if (size <= 1) {
+                return 0;
+            }
+            double mean = getMean();
+            double variance = 0;
+            for (int i = first; i <= last; i++) {
+                double diff = medianValue(i) - mean;
+                variance += counts[i] * diff * diff;
+            }
+            return Math.sqrt(variance / (size - 1));
+        }
+
+        @Override
+        public void dump(OutputStream output) {
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            for (int i = first; size > 0 && i <= last; i++) {
+                if (counts[i] > 0) {
+                    out.printf("%d %d%n", medianValue(i), counts[i]);
+                }
+            }
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.udea.lab5.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import org.eclipse.microprofile.metrics.Counter;
+
+/**
+ * A counter backed by a {@link LongAdder}, so that threads incrementing it
+ * concurrently update separate cells instead of contending on one value.
+ */
+public class LongAdderCounter implements Counter {
+
+    private final LongAdder count = new LongAdder();
+
+    @Override
+    public void inc() {
+        count.increment();
+    }
+
+    @Override
+    public void inc(long n) {
+        count.add(n);
+    }
+
+    @Override
+    public void dec() {
+        count.decrement();
+    }
+
+    @Override
+    public void dec(long n) {
+        count.add(-n);
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+}
@@ -0,0 +1,107 @@
+package com.udea.lab5.metrics;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Timer;
+
+/**
+ * A fixed size thread pool with a bounded queue, that exports its queue
+ * depth, active threads, completed tasks, rejections and queue wait time to
+ * the metric registry.
+ *
+ * <p>
+ * A task submitted while the queue is full is rejected with a
+ * {@link QueueFullException}, carrying the Retry-After of the executor,
+ * instead of piling up. The threads come from the container's
+ * {@code ManagedThreadFactory}, so they run with its context and are stopped
+ * on undeploy.</p>
+ */
+public class MeteredExecutor {
+
+    private static final String EXECUTOR = "executor.";
+
+    private final ThreadPoolExecutor executor;
+    private final Counter rejected;
+    private final Timer queueWait;
+
+    /**
+     * @param name the executor name, used as metric prefix
+     * @param threads the number of threads
+     * @param queueCapacity the maximum number of waiting tasks
+     * @param retryAfterInSeconds the seconds a rejected client should wait
+     * before retrying
+     * @param threadFactory the managed thread factory of the container
+     * @param registry the metric registry
+     */
+    public MeteredExecutor(String name, int threads, int queueCapacity, long retryAfterInSeconds,
+            ManagedThreadFactory threadFactory, MetricRegistry registry) {
+        this.rejected = registry.counter(EXECUTOR + name + ".rejected");
+        this.queueWait = registry.timer(EXECUTOR + name + ".queueWait");
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, (task, pool) -> {
+                    rejected.inc();
+                    throw new QueueFullException("The " + name + " queue is full", retryAfterInSeconds);
+                });
+        register(registry, EXECUTOR + name + ".queueSize", () -> executor.getQueue().size());
+        register(registry, EXECUTOR + name + ".activeThreads", executor::getActiveCount);
+        register(registry, EXECUTOR + name + ".completed", executor::getCompletedTaskCount);
+    }
+
+    private static <T extends Number> void register(MetricRegistry registry, String name, Gauge<T> gauge) {
+        if (!registry.getGauges().containsKey(name)) {
+            registry.register(name, gauge);
+        }
+    }
+
+    /**
+     * Runs the task on the pool and waits for its result.
+     *
+     * @param task the task
+     * @param <T> the result type
+     * @return the result of the task
+     * @throws QueueFullException if the queue is full
+     */
+    public <T> T call(Callable<T> task) {
+        Future<T> future = submit(task);
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    /**
+     * Queues the task on the pool without waiting for it.
+     *
+     * @param task the task
+     * @param <T> the result type
+     * @return the pending result of the task
+     * @throws QueueFullException if the queue is full
+     */
+    public <T> Future<T> submit(Callable<T> task) {
+        long submitted = System.nanoTime();
+        return executor.submit(() -> {
+            queueWait.update(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+            return task.call();
+        });
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,36 @@
+package com.udea.lab5.metrics;
+
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.Metric;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+
+/**
+ * Registers the custom metric implementations, like {@link LogLinearHistogram}
+ * and {@link LongAdderCounter}, that the registry can't create by itself.
+ */
+final class MetricRegistration {
+
+    private MetricRegistration() {
+    }
+
+    /**
+     * @param registry the metric registry
+     * @param metricClass the class of the metric
+     * @param name the metric name
+     * @param type the metric type
+     * @param unit the metric unit
+     * @param metric the metric to register if none is registered yet
+     * @param <T> the metric type
+     * @return the metric already registered under the name, if any, so a
+     * redeployed bean keeps recording into the exported one
+     */
+    static <T extends Metric> T register(MetricRegistry registry, Class<T> metricClass, String name,
+            MetricType type, String unit, T metric) {
+        Metric existing = registry.getMetrics().get(name);
+        if (metricClass.isInstance(existing)) {
+            return metricClass.cast(existing);
+        }
+        return registry.register(new Metadata(name, type, unit), metric);
+    }
+}
@@ -0,0 +1,90 @@
+package com.udea.lab5.metrics;
+
+import static com.udea.lab5.metrics.MetricRegistration.register;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.slf4j.Logger;
+
+/**
+ * Latency and rows returned per entity and repository operation, or named
+ * query, such as {@code repository.User.findUserByLogin}, with a log of the
+ * queries slower than the configured threshold.
+ */
+@ApplicationScoped
+public class QueryMetrics {
+
+    private static final String REPOSITORY = "repository.";
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private MetricRegistry registry;
+
+    @Inject
+    @ConfigProperty(name = "repository.slowQueryThresholdInMillis", defaultValue = "200")
+    private long slowQueryThresholdInMillis;
+
+    @Inject
+    @ConfigProperty(name = "metrics.routes.windowInSeconds", defaultValue = "60")
+    private long windowInSeconds;
+
+    private final ConcurrentMap<Class<?>, ConcurrentMap<String, Query>> queries = new ConcurrentHashMap<>();
+
+    /**
+     * @param entityClass the entity queried
+     * @param operation the repository operation or named query
+     * @param nanos the query duration
+     * @param rows the number of rows returned, or changed
+     */
+    public void record(Class<?> entityClass, String operation, long nanos, long rows) {
+        Query query = query(entityClass, operation);
+        query.latency.update(TimeUnit.NANOSECONDS.toMicros(nanos));
+        query.rows.update(rows);
+        if (nanos > TimeUnit.MILLISECONDS.toNanos(slowQueryThresholdInMillis)) {
+            query.slow.inc();
+            log.warn("Slow query {}.{} took {} ms, {} rows", entityClass.getSimpleName(), operation,
+                    TimeUnit.NANOSECONDS.toMillis(nanos), rows);
+        }
+    }
+
+    private Query query(Class<?> entityClass, String operation) {
+        ConcurrentMap<String, Query> operations = queries.get(entityClass);
+        if (operations == null) {
+            operations = queries.computeIfAbsent(entityClass, key -> new ConcurrentHashMap<>());
+        }
+        Query query = operations.get(operation);
+        if (query == null) {
+            query = operations.computeIfAbsent(operation, key -> new Query(entityClass.getSimpleName() + "." + key));
+        }
+        return query;
+    }
+
+    private class Query {
+
+        private final LogLinearHistogram latency;
+        private final LogLinearHistogram rows;
+        private final LongAdderCounter slow;
+
+        Query(String name) {
+            String prefix = REPOSITORY + name + ".";
+            latency = register(registry, LogLinearHistogram.class, prefix + "latency", MetricType.HISTOGRAM,
+                    MetricUnits.MICROSECONDS, histogram());
+            rows = register(registry, LogLinearHistogram.class, prefix + "rows", MetricType.HISTOGRAM,
+                    MetricUnits.NONE, histogram());
+            slow = register(registry, LongAdderCounter.class, prefix + "slow", MetricType.COUNTER, MetricUnits.NONE,
+                    new LongAdderCounter());
+        }
+
+        private LogLinearHistogram histogram() {
+            return new LogLinearHistogram(TimeUnit.SECONDS.toMillis(windowInSeconds));
+        }
+    }
+}
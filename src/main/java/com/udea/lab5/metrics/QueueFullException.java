@@ -0,0 +1,31 @@
+package com.udea.lab5.metrics;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Thrown when a {@link MeteredExecutor} rejects a task because its queue is
+ * full.
+ */
+public class QueueFullException extends RejectedExecutionException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterInSeconds;
+
+    /**
+     * @param message the detail message
+     * @param retryAfterInSeconds the seconds the client should wait before
+     * retrying
+     */
+    public QueueFullException(String message, long retryAfterInSeconds) {
+        super(message);
+        this.retryAfterInSeconds = retryAfterInSeconds;
+    }
+
+    /**
+     * @return the seconds the client should wait before retrying
+     */
+    public long getRetryAfterInSeconds() {
+        return retryAfterInSeconds;
+    }
+}
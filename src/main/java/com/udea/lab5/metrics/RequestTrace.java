@@ -0,0 +1,158 @@
+package com.udea.lab5.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.json.bind.annotation.JsonbTransient;
+
+/**
+ * The timing breakdown of one request: the spans recorded around the traced
+ * calls, nested by depth, with their offset from the start of the request.
+ *
+ * <p>
+ * A trace is recorded by the request thread only, and published once the
+ * request completes.</p>
+ */
+public class RequestTrace {
+
+    private final String id;
+    private final String method;
+    private final String path;
+    private final long startTime = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private final int maxSpans;
+    private final List<Span> spans = new ArrayList<>();
+    private int depth;
+    private int droppedSpans;
+    private String route;
+    private int status;
+    private long durationNanos;
+
+    RequestTrace(String id, String method, String path, int maxSpans) {
+        this.id = id;
+        this.method = method;
+        this.path = path;
+        this.maxSpans = maxSpans;
+    }
+
+    /**
+     * Opens a span nested in the open ones.
+     *
+     * @param name the span name
+     * @return the span index to close it with, -1 if the trace is full
+     */
+    int enter(String name) {
+        depth++;
+        if (spans.size() >= maxSpans) {
+            droppedSpans++;
+            return -1;
+        }
+        spans.add(new Span(name, System.nanoTime() - startNanos, depth));
+        return spans.size() - 1;
+    }
+
+    void exit(int span) {
+        depth--;
+        if (span >= 0) {
+            Span closed = spans.get(span);
+            closed.durationNanos = System.nanoTime() - startNanos - closed.offsetNanos;
+        }
+    }
+
+    /**
+     * Records a span that started with the request.
+     *
+     * @param name the span name
+     */
+    void mark(String name) {
+        if (spans.size() < maxSpans) {
+            Span span = new Span(name, 0, depth + 1);
+            span.durationNanos = System.nanoTime() - startNanos;
+            spans.add(span);
+        } else {
+            droppedSpans++;
+        }
+    }
+
+    void finish(String route, int status) {
+        this.route = route;
+        this.status = status;
+        this.durationNanos = System.nanoTime() - startNanos;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getDurationMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(durationNanos);
+    }
+
+    @JsonbTransient
+    long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public int getDroppedSpans() {
+        return droppedSpans;
+    }
+
+    public List<Span> getSpans() {
+        return Collections.unmodifiableList(spans);
+    }
+
+    public static class Span {
+
+        private final String name;
+        private final long offsetNanos;
+        private final int depth;
+        private long durationNanos = -1;
+
+        Span(String name, long offsetNanos, int depth) {
+            this.name = name;
+            this.offsetNanos = offsetNanos;
+            this.depth = depth;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getOffsetMicros() {
+            return TimeUnit.NANOSECONDS.toMicros(offsetNanos);
+        }
+
+        /**
+         * @return the span duration, -1 if it was still open when the request
+         * completed
+         */
+        public long getDurationMicros() {
+            return durationNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMicros(durationNanos);
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.udea.lab5.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * In-process request tracing: the request thread holds the trace of its
+ * request, {@link Traced} beans record spans into it, and the slowest
+ * completed traces are kept for the admin UI.
+ *
+ * <p>
+ * The slowest traces live in a fixed array. A completed trace faster than all
+ * of them only costs two volatile reads, so the steady state is lock-free;
+ * the array is locked when a slower trace replaces the fastest one, or once
+ * an entry is older than the configured age.</p>
+ */
+@ApplicationScoped
+public class RequestTracer {
+
+    /**
+     * The request ids accepted from the client: they are echoed in a response
+     * header and written to the access log, so they can't carry separators or
+     * line breaks.
+     */
+    private static final Pattern REQUEST_ID = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+
+    @Inject
+    @ConfigProperty(name = "tracing.enabled", defaultValue = "true")
+    private boolean enabled;
+
+    @Inject
+    @ConfigProperty(name = "tracing.slowest", defaultValue = "20")
+    private int slowest;
+
+    @Inject
+    @ConfigProperty(name = "tracing.maxSpans", defaultValue = "200")
+    private int maxSpans;
+
+    @Inject
+    @ConfigProperty(name = "tracing.maxAgeInSeconds", defaultValue = "900")
+    private long maxAgeInSeconds;
+
+    private final ThreadLocal<RequestTrace> current = new ThreadLocal<>();
+
+    private final String idPrefix = Long.toString(ThreadLocalRandom.current().nextLong(Long.MAX_VALUE), 36);
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private RequestTrace[] traces;
+
+    private volatile long threshold;
+
+    private volatile long oldestStartTime;
+
+    @PostConstruct
+    public void init() {
+        traces = new RequestTrace[slowest];
+        oldestStartTime = Long.MAX_VALUE;
+    }
+
+    /**
+     * Starts the trace of the request on the current thread, reusing the
+     * request id sent by the client if any and valid.
+     *
+     * @param request the request
+     * @param requestId the request id sent by the client, or null
+     * @return the trace, null if tracing is disabled
+     */
+    public RequestTrace start(HttpServletRequest request, String requestId) {
+        if (!enabled) {
+            return null;
+        }
+        String id = requestId != null && REQUEST_ID.matcher(requestId).matches()
+                ? requestId : idPrefix + "-" + Long.toString(sequence.incrementAndGet(), 36);
+        RequestTrace trace = new RequestTrace(id, request.getMethod(), request.getRequestURI(), maxSpans);
+        current.set(trace);
+        return trace;
+    }
+
+    /**
+     * @return the trace of the request handled by the current thread, or null
+     */
+    public RequestTrace current() {
+        return current.get();
+    }
+
+    /**
+     * Detaches the trace from the current thread, an async request completes
+     * it on another thread.
+     */
+    public void detach() {
+        current.remove();
+    }
+
+    /**
+     * Completes the trace and keeps it if it is one of the slowest.
+     *
+     * @param trace the trace
+     * @param route the matched route, or null
+     * @param status the response status
+     */
+    public void finish(RequestTrace trace, String route, int status) {
+        trace.finish(route, status);
+        if (trace.getDurationNanos() > threshold
+                || oldestStartTime < System.currentTimeMillis() - maxAgeInSeconds * 1000) {
+            keep(trace);
+        }
+    }
+
+    /**
+     * @return the slowest traces, slowest first
+     */
+    public List<RequestTrace> getSlowest() {
+        List<RequestTrace> result = new ArrayList<>(slowest);
+        synchronized (this) {
+            Arrays.stream(traces).filter(Objects::nonNull).forEach(result::add);
+        }
+        result.sort(Comparator.comparingLong(RequestTrace::getDurationNanos).reversed());
+        return result;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(traces, null);
+        threshold = 0;
+        oldestStartTime = Long.MAX_VALUE;
+    }
+
+    private synchronized void keep(RequestTrace trace) {
+        long expired = System.currentTimeMillis() - maxAgeInSeconds * 1000;
+        int replaced = -1;
+        for (int i = 0; i < traces.length; i++) {
+            if (traces[i] == null || traces[i].getStartTime() < expired) {
+                replaced = i;
+                break;
+            }
+            if (replaced < 0 || traces[i].getDurationNanos() < traces[replaced].getDurationNanos()) {
+                replaced = i;
+            }
+        }
+        if (replaced < 0 || traces[replaced] != null && traces[replaced].getStartTime() >= expired
+                && traces[replaced].getDurationNanos() >= trace.getDurationNanos()) {
+            return;
+        }
+        traces[replaced] = trace;
+        long fastest = Long.MAX_VALUE;
+        long oldest = Long.MAX_VALUE;
+        for (RequestTrace kept : traces) {
+            if (kept == null) {
+                fastest = 0;
+            } else {
+                fastest = Math.min(fastest, kept.getDurationNanos());
+                oldest = Math.min(oldest, kept.getStartTime());
+            }
+        }
+        threshold = fastest;
+        oldestStartTime = oldest;
+    }
+}
@@ -0,0 +1,51 @@
+package com.udea.lab5.metrics;
+
+import java.io.IOException;
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Counts the requests per matched route, and exposes the route to the servlet
+ * filters as a request attribute so they can record it too. Nothing is
+ * logged and no string is built per request.
+ */
+@Provider
+public class RouteFilter implements ContainerRequestFilter {
+
+    /**
+     * The request attribute holding the {@link RouteMetrics.Route}.
+     */
+    public static final String ROUTE = RouteFilter.class.getName() + ".route";
+
+    @Inject
+    private RouteMetrics routeMetrics;
+
+    @Inject
+    private RequestTracer tracer;
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    @Context
+    private HttpServletRequest servletRequest;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) throws IOException {
+        if (resourceInfo.getResourceMethod() == null) {
+            return;
+        }
+        RouteMetrics.Route route = routeMetrics.route(resourceInfo.getResourceClass(),
+                resourceInfo.getResourceMethod(), requestContext.getMethod());
+        route.requests.inc();
+        servletRequest.setAttribute(ROUTE, route);
+        RequestTrace trace = tracer.current();
+        if (trace != null) {
+            trace.mark("filters+matching");
+        }
+    }
+}
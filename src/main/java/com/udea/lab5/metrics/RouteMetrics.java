@@ -0,0 +1,150 @@
+package com.udea.lab5.metrics;
+
+import static com.udea.lab5.metrics.MetricRegistration.register;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.Path;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.eclipse.microprofile.metrics.MetricUnits;
+
+/**
+ * Request count, latency and request/response size histograms per route: the
+ * HTTP method and the resource template matched by JAX-RS, such as
+ * {@code GET /api/persona/{id}}.
+ *
+ * <p>
+ * Routes are keyed by resource method, so the number of metrics is bounded
+ * by the resources however many distinct paths are requested. Requests that
+ * don't match a resource, and routes past the configured maximum, share the
+ * {@value #OTHER} metrics.</p>
+ */
+@ApplicationScoped
+public class RouteMetrics {
+
+    static final String OTHER = "other";
+
+    private static final String ROUTES = "InstrumentedFilter.routes.";
+
+    @Inject
+    private MetricRegistry registry;
+
+    @Inject
+    @ConfigProperty(name = "metrics.routes.maxRoutes", defaultValue = "256")
+    private int maxRoutes;
+
+    @Inject
+    @ConfigProperty(name = "metrics.routes.windowInSeconds", defaultValue = "60")
+    private long windowInSeconds;
+
+    /**
+     * The routes by name, resource methods with the same method and template
+     * share one.
+     */
+    private final ConcurrentMap<String, Route> routes = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Method, Route> routesByMethod = new ConcurrentHashMap<>();
+
+    private Route other;
+
+    @PostConstruct
+    public void init() {
+        other = new Route(OTHER);
+    }
+
+    /**
+     * @param resourceClass the matched resource class
+     * @param method the matched resource method
+     * @param requestMethod the HTTP method of the request, used when the
+     * resource method has no designator
+     * @return the metrics of the route
+     */
+    public Route route(Class<?> resourceClass, Method method, String requestMethod) {
+        Route route = routesByMethod.get(method);
+        if (route == null) {
+            String name = name(resourceClass, method, requestMethod);
+            route = routes.get(name);
+            if (route == null) {
+                if (routes.size() >= maxRoutes) {
+                    return other;
+                }
+                route = routes.computeIfAbsent(name, Route::new);
+            }
+            routesByMethod.putIfAbsent(method, route);
+        }
+        return route;
+    }
+
+    /**
+     * @param route the route, null if the request didn't match a resource
+     * @param nanos the request duration
+     * @param requestBytes the request body size
+     * @param responseBytes the response body size
+     */
+    public void record(Route route, long nanos, long requestBytes, long responseBytes) {
+        Route metrics = route == null ? other : route;
+        metrics.latency.update(TimeUnit.NANOSECONDS.toMicros(nanos));
+        metrics.requestBytes.update(requestBytes);
+        metrics.responseBytes.update(responseBytes);
+    }
+
+    private static String name(Class<?> resourceClass, Method method, String requestMethod) {
+        String httpMethod = requestMethod;
+        for (Annotation annotation : method.getAnnotations()) {
+            HttpMethod designator = annotation.annotationType().getAnnotation(HttpMethod.class);
+            if (designator != null) {
+                httpMethod = designator.value();
+            }
+        }
+        StringBuilder template = new StringBuilder();
+        append(template, resourceClass.getAnnotation(Path.class));
+        append(template, method.getAnnotation(Path.class));
+        return httpMethod + " " + (template.length() == 0 ? "/" : template);
+    }
+
+    private static void append(StringBuilder template, Path path) {
+        if (path == null) {
+            return;
+        }
+        for (String segment : path.value().split("/")) {
+            if (!segment.isEmpty()) {
+                // {id: [0-9]+} -> {id}
+                template.append('/').append(segment.replaceAll("\\{\\s*([^:}\\s]+)\\s*:[^}]*}", "{$1}"));
+            }
+        }
+    }
+
+    public class Route {
+
+        final String name;
+        final LongAdderCounter requests;
+        final LogLinearHistogram latency;
+        final LogLinearHistogram requestBytes;
+        final LogLinearHistogram responseBytes;
+
+        Route(String route) {
+            name = route;
+            String prefix = ROUTES + route.replace(' ', '.') + ".";
+            requests = register(registry, LongAdderCounter.class, prefix + "requests", MetricType.COUNTER, MetricUnits.NONE,
+                    new LongAdderCounter());
+            latency = register(registry, LogLinearHistogram.class, prefix + "latency", MetricType.HISTOGRAM,
+                    MetricUnits.MICROSECONDS, histogram());
+            requestBytes = register(registry, LogLinearHistogram.class, prefix + "requestBytes", MetricType.HISTOGRAM,
+                    MetricUnits.BYTES, histogram());
+            responseBytes = register(registry, LogLinearHistogram.class, prefix + "responseBytes", MetricType.HISTOGRAM,
+                    MetricUnits.BYTES, histogram());
+        }
+
+        private LogLinearHistogram histogram() {
+            return new LogLinearHistogram(TimeUnit.SECONDS.toMillis(windowInSeconds));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.udea.lab5.metrics;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Priority;
+import javax.inject.Inject;
+import javax.interceptor.AroundInvoke;
+import javax.interceptor.Interceptor;
+import javax.interceptor.InvocationContext;
+
+@Traced
+@Interceptor
+@Priority(Interceptor.Priority.APPLICATION)
+public class TracedInterceptor {
+
+    private static final ClassValue<ConcurrentMap<Method, String>> SPAN_NAMES = new ClassValue<ConcurrentMap<Method, String>>() {
+        @Override
+        protected ConcurrentMap<Method, String> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    @Inject
+    private RequestTracer tracer;
+
+    @AroundInvoke
+    public Object trace(InvocationContext context) throws Exception {
+        RequestTrace trace = tracer.current();
+        if (trace == null) {
+            return context.proceed();
+        }
+        Class<?> targetClass = context.getTarget().getClass();
+        Method method = context.getMethod();
+        String name = SPAN_NAMES.get(targetClass).computeIfAbsent(method, key -> spanName(targetClass, key));
+        int span = trace.enter(name);
+        try {
+            return context.proceed();
+        } finally {
+            trace.exit(span);
+        }
+    }
+
+    /**
+     * @return the bean class and method name, such as
+     * {@code UserRepository.findCredentialByLogin}
+     */
+    private static String spanName(Class<?> targetClass, Method method) {
+        Class<?> beanClass = targetClass;
+        // skip the container generated proxy subclasses
+        while (beanClass.getSuperclass() != null && beanClass.getSimpleName().contains("$")) {
+            beanClass = beanClass.getSuperclass();
+        }
+        return beanClass.getSimpleName() + "." + method.getName();
+    }
+}
@@ -0,0 +1,34 @@
+package com.udea.lab5.metrics;
+
+import java.io.IOException;
+import javax.inject.Inject;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+/**
+ * Records the serialization of the response entity as a span of the current
+ * {@link RequestTrace}.
+ */
+@Provider
+public class TracedWriterInterceptor implements WriterInterceptor {
+
+    @Inject
+    private RequestTracer tracer;
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException, WebApplicationException {
+        RequestTrace trace = tracer.current();
+        if (trace == null) {
+            context.proceed();
+            return;
+        }
+        int span = trace.enter("serialize");
+        try {
+            context.proceed();
+        } finally {
+            trace.exit(span);
+        }
+    }
+}
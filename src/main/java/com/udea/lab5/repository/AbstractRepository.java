@@ -1,26 +1,79 @@
 package com.udea.lab5.repository;
 
+import com.udea.lab5.metrics.QueryMetrics;
+import com.udea.lab5.metrics.Traced;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import javax.inject.Inject;
+import javax.persistence.EntityGraph;
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
 import javax.persistence.NoResultException;
+import javax.persistence.OptimisticLockException;
 import javax.persistence.Query;
 import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.ParameterExpression;
+import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.EntityType;
 import javax.transaction.Transactional;
+import org.eclipse.persistence.config.HintValues;
+import org.eclipse.persistence.config.QueryHints;
+import static javax.transaction.Transactional.TxType.NOT_SUPPORTED;
 import static javax.transaction.Transactional.TxType.REQUIRED;
 import static javax.transaction.Transactional.TxType.SUPPORTS;
 
+@Traced
 @Transactional(SUPPORTS)
 public abstract class AbstractRepository<E, P> {
 
+    private static final String FIND_ALL = "findAll";
+    private static final String FIND_FIRST = "findFirst";
+    private static final String FIND_AFTER = "findAfter";
+    private static final String COUNT = "count";
+    private static final String DELETE_BY_IDS = "deleteByIds";
+    private static final String AFTER = "after";
+    private static final String IDS = "ids";
+    private static final String CREATE = "create";
+    private static final String CREATE_ALL = "createAll";
+    private static final String EDIT = "edit";
+    private static final String REMOVE = "remove";
+    private static final String REMOVE_ALL = "removeAll";
+    private static final String FIND = "find";
+    private static final String FIND_RANGE = "findRange";
+    private static final String FIND_RANGE_AFTER = "findRangeAfter";
+    private static final String SCROLL = "scroll";
+    protected static final int DELETE_CHUNK_SIZE = 1000;
+    private static final String LOAD_GRAPH = "javax.persistence.loadgraph";
+
+    /**
+     * Entity classes whose query templates are registered as named queries.
+     */
+    private static final Set<Class<?>> PREPARED_TEMPLATES = ConcurrentHashMap.newKeySet();
+
+    private static final ConcurrentMap<String, EntityGraph<?>> ENTITY_GRAPHS = new ConcurrentHashMap<>();
+
     private final Class<E> entityClass;
 
+    @Inject
+    private EntityCounter entityCounter;
+
+    @Inject
+    private QueryMetrics queryMetrics;
+
     public AbstractRepository(Class<E> entityClass) {
         this.entityClass = entityClass;
     }
@@ -29,17 +82,103 @@ public abstract class AbstractRepository<E, P> {
 
     @Transactional(REQUIRED)
     public void create(E entity) {
-        getEntityManager().persist(entity);
+        timed(CREATE, () -> {
+            getEntityManager().persist(entity);
+            return entity;
+        }, created -> 1);
+        entityCounter.add(entityClass, 1);
+    }
+
+    /**
+     * Persists the entities in one transaction. The persistence context is
+     * flushed and cleared every {@code batchSize} entities so the inserts are
+     * sent as JDBC batches and the managed entities don't pile up.
+     *
+     * @param entities the entities to persist
+     * @param batchSize the number of entities per flush
+     */
+    @Transactional(REQUIRED)
+    public void createAll(List<E> entities, int batchSize) {
+        EntityManager em = getEntityManager();
+        timed(CREATE_ALL, () -> {
+            int pending = 0;
+            for (E entity : entities) {
+                em.persist(entity);
+                if (++pending % batchSize == 0) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+            em.flush();
+            em.clear();
+            return entities;
+        }, List::size);
+        entityCounter.add(entityClass, entities.size());
     }
 
     @Transactional(REQUIRED)
     public E edit(E entity) {
-        return getEntityManager().merge(entity);
+        return timed(EDIT, () -> getEntityManager().merge(entity), merged -> 1);
+    }
+
+    /**
+     * Merges the entity and flushes it, so a stale {@code @Version} surfaces
+     * here as an {@link OptimisticLockException} instead of as a rollback at
+     * commit.
+     *
+     * @param entity the entity to merge
+     * @return the managed entity
+     */
+    @Transactional(REQUIRED)
+    public E editAndFlush(E entity) {
+        return timed(EDIT, () -> {
+            E merged = getEntityManager().merge(entity);
+            getEntityManager().flush();
+            return merged;
+        }, merged -> 1);
     }
 
     @Transactional(REQUIRED)
     public void remove(E entity) {
-        getEntityManager().remove(getEntityManager().merge(entity));
+        timed(REMOVE, () -> {
+            getEntityManager().remove(getEntityManager().merge(entity));
+            return entity;
+        }, removed -> 1);
+        entityCounter.add(entityClass, -1);
+    }
+
+    /**
+     * Deletes the entities with the given primary keys without loading them,
+     * with one JPQL {@code DELETE} per chunk of keys.
+     *
+     * @param ids the primary keys of the entities to delete
+     * @return the number of deleted rows
+     */
+    @Transactional(REQUIRED)
+    public int removeAll(Collection<P> ids) {
+        List<P> keys = new ArrayList<>(ids);
+        int deleted = timed(REMOVE_ALL, () -> {
+            int rows = 0;
+            for (int from = 0; from < keys.size(); from += DELETE_CHUNK_SIZE) {
+                List<P> chunk = keys.subList(from, Math.min(keys.size(), from + DELETE_CHUNK_SIZE));
+                beforeRemoveAll(chunk);
+                rows += getEntityManager().createNamedQuery(template(DELETE_BY_IDS))
+                        .setParameter(IDS, chunk)
+                        .executeUpdate();
+            }
+            return rows;
+        }, Integer::longValue);
+        adjustCount(-deleted);
+        return deleted;
+    }
+
+    /**
+     * Called before each chunk of {@link #removeAll(Collection)} is deleted, to
+     * clean up the rows a JPQL {@code DELETE} doesn't cascade to.
+     *
+     * @param ids the primary keys of the chunk
+     */
+    protected void beforeRemoveAll(List<P> ids) {
     }
 
     public P getIdentifier(E entity) {
@@ -47,13 +186,11 @@ public abstract class AbstractRepository<E, P> {
     }
 
     public E find(P id) {
-        return getEntityManager().find(entityClass, id);
+        return timed(FIND, () -> getEntityManager().find(entityClass, id), found -> 1);
     }
 
     public List<E> findAll() {
-        CriteriaQuery cq = getEntityManager().getCriteriaBuilder().createQuery();
-        cq.select(cq.from(entityClass));
-        return getEntityManager().createQuery(cq).getResultList();
+        return timed(FIND_ALL, getEntityManager().createNamedQuery(template(FIND_ALL), entityClass)::getResultList, List::size);
     }
 
     public List<E> findRange(int startPosition, int size) {
@@ -61,27 +198,203 @@ public abstract class AbstractRepository<E, P> {
     }
 
     public List<E> findRange(int startPosition, int size, String entityGraph) {
-        CriteriaQuery cq = getEntityManager().getCriteriaBuilder().createQuery();
-        cq.select(cq.from(entityClass));
-        Query q = getEntityManager().createQuery(cq);
+        TypedQuery<E> q = getEntityManager().createNamedQuery(template(FIND_ALL), entityClass);
         q.setMaxResults(size);
         q.setFirstResult(startPosition);
         if (entityGraph != null) {
-            q.setHint("javax.persistence.loadgraph", getEntityManager().getEntityGraph(entityGraph));
+            q.setHint(LOAD_GRAPH, getEntityGraph(entityGraph));
+        }
+        return timed(FIND_RANGE, q::getResultList, List::size);
+    }
+
+    public List<E> findRangeAfter(P after, int size) {
+        return findRangeAfter(after, size, null);
+    }
+
+    /**
+     * Keyset (seek) pagination: returns the next {@code size} entities whose
+     * primary key is greater than {@code after}, ordered by primary key. The
+     * cost does not depend on how deep the client pages.
+     *
+     * @param after the last primary key of the previous page, or null for the
+     * first page
+     * @param size the page size
+     * @param entityGraph the optional load graph name
+     * @return the entities of the page
+     */
+    public List<E> findRangeAfter(P after, int size, String entityGraph) {
+        TypedQuery<E> q;
+        if (after == null) {
+            q = getEntityManager().createNamedQuery(template(FIND_FIRST), entityClass);
+        } else {
+            q = getEntityManager().createNamedQuery(template(FIND_AFTER), entityClass);
+            q.setParameter(AFTER, after);
+        }
+        q.setMaxResults(size);
+        if (entityGraph != null) {
+            q.setHint(LOAD_GRAPH, getEntityGraph(entityGraph));
+        }
+        return timed(FIND_RANGE_AFTER, q::getResultList, List::size);
+    }
+
+    /**
+     * Reads every entity, ordered by primary key, one keyset page of
+     * {@code pageSize} rows at a time, without loading the whole table in
+     * memory. Each page is a separate read outside of any JTA transaction, so
+     * a slow consumer, like a client downloading an export, neither runs into
+     * the transaction timeout nor holds a connection between pages.
+     *
+     * @param pageSize the number of entities read per query
+     * @param consumer the consumer of each entity
+     * @throws IOException if the consumer fails to write the entity
+     */
+    @Transactional(NOT_SUPPORTED)
+    public void scroll(int pageSize, RowConsumer<E> consumer) throws IOException {
+        long start = System.nanoTime();
+        int rows = 0;
+        try {
+            P after = null;
+            List<E> page;
+            do {
+                TypedQuery<E> q = after == null
+                        ? getEntityManager().createNamedQuery(template(FIND_FIRST), entityClass)
+                        : getEntityManager().createNamedQuery(template(FIND_AFTER), entityClass).setParameter(AFTER, after);
+                page = q.setMaxResults(pageSize)
+                        .setHint(QueryHints.JDBC_FETCH_SIZE, pageSize)
+                        .setHint(QueryHints.READ_ONLY, HintValues.TRUE)
+                        .getResultList();
+                for (E entity : page) {
+                    consumer.accept(entity);
+                }
+                rows += page.size();
+                if (!page.isEmpty()) {
+                    after = getIdentifier(page.get(page.size() - 1));
+                }
+            } while (page.size() == pageSize);
+        } finally {
+            queryMetrics.record(entityClass, SCROLL, System.nanoTime() - start, rows);
+        }
+    }
+
+    /**
+     * Runs the query and records its duration and number of rows, under the
+     * entity and the operation name, in the {@link QueryMetrics}.
+     *
+     * @param operation the operation or named query
+     * @param query the query
+     * @param rows the number of rows of the result
+     * @param <T> the result type
+     * @return the query result
+     */
+    protected <T> T timed(String operation, Supplier<T> query, ToLongFunction<T> rows) {
+        long start = System.nanoTime();
+        T result = null;
+        try {
+            result = query.get();
+            return result;
+        } finally {
+            queryMetrics.record(entityClass, operation, System.nanoTime() - start,
+                    result == null ? 0 : rows.applyAsLong(result));
+        }
+    }
+
+    /**
+     * Returns the name under which the query template is registered, building
+     * and registering all the templates of the entity class on first use, so
+     * a call only creates the named query and binds its parameters.
+     *
+     * @param name the template name
+     * @return the named query name
+     */
+    private String template(String name) {
+        if (!PREPARED_TEMPLATES.contains(entityClass)) {
+            prepareTemplates();
         }
-        return q.getResultList();
+        return templateName(name);
+    }
+
+    private String templateName(String name) {
+        return entityClass.getName() + ".template." + name;
     }
 
+    private void prepareTemplates() {
+        synchronized (PREPARED_TEMPLATES) {
+            if (PREPARED_TEMPLATES.contains(entityClass)) {
+                return;
+            }
+            EntityManager em = getEntityManager();
+            EntityManagerFactory emf = em.getEntityManagerFactory();
+            CriteriaBuilder cb = em.getCriteriaBuilder();
+            EntityType<E> entityType = em.getMetamodel().entity(entityClass);
+            Class idType = entityType.getIdType().getJavaType();
+            String idAttribute = entityType.getId(idType).getName();
+
+            CriteriaQuery<E> findAll = cb.createQuery(entityClass);
+            findAll.select(findAll.from(entityClass));
+            emf.addNamedQuery(templateName(FIND_ALL), em.createQuery(findAll));
+
+            CriteriaQuery<E> findFirst = cb.createQuery(entityClass);
+            Root<E> firstRoot = findFirst.from(entityClass);
+            findFirst.select(firstRoot).orderBy(cb.asc(firstRoot.get(idAttribute)));
+            emf.addNamedQuery(templateName(FIND_FIRST), em.createQuery(findFirst));
+
+            CriteriaQuery<E> findAfter = cb.createQuery(entityClass);
+            Root<E> afterRoot = findAfter.from(entityClass);
+            Path<Comparable> afterId = afterRoot.get(idAttribute);
+            ParameterExpression<Comparable> after = cb.parameter(idType, AFTER);
+            findAfter.select(afterRoot).where(cb.greaterThan(afterId, after)).orderBy(cb.asc(afterId));
+            emf.addNamedQuery(templateName(FIND_AFTER), em.createQuery(findAfter));
+
+            CriteriaQuery<Long> count = cb.createQuery(Long.class);
+            count.select(cb.count(count.from(entityClass)));
+            emf.addNamedQuery(templateName(COUNT), em.createQuery(count));
+
+            emf.addNamedQuery(templateName(DELETE_BY_IDS), em.createQuery(
+                    "DELETE FROM " + entityType.getName() + " e WHERE e." + idAttribute + " IN :" + IDS));
+
+            PREPARED_TEMPLATES.add(entityClass);
+        }
+    }
+
+    /**
+     * @param name the named entity graph
+     * @return the entity graph, resolved once per name
+     */
+    protected EntityGraph<?> getEntityGraph(String name) {
+        return ENTITY_GRAPHS.computeIfAbsent(name, getEntityManager()::getEntityGraph);
+    }
+
+    /**
+     * @return the row count, served from the maintained entity counter
+     */
     public int count() {
-        CriteriaQuery criteriaQuery = getEntityManager().getCriteriaBuilder().createQuery();
-        Root<E> root = criteriaQuery.from(entityClass);
-        criteriaQuery.select(getEntityManager().getCriteriaBuilder().count(root));
-        Query query = getEntityManager().createQuery(criteriaQuery);
-        return ((Long) query.getSingleResult()).intValue();
+        return (int) entityCounter.get(entityClass, this::countRows);
+    }
+
+    /**
+     * @return the maintained row count, which is only read from the database
+     * when no counter exists yet
+     */
+    public int estimateCount() {
+        return (int) entityCounter.estimate(entityClass, this::countRows);
+    }
+
+    /**
+     * Adjusts the maintained row count after a bulk operation.
+     *
+     * @param delta the number of rows added (or removed when negative)
+     */
+    protected void adjustCount(long delta) {
+        entityCounter.add(entityClass, delta);
+    }
+
+    private long countRows() {
+        return timed(COUNT, getEntityManager().createNamedQuery(template(COUNT), Long.class)::getSingleResult, count -> 1);
     }
 
     public Optional<E> findSingleByNamedQuery(String namedQueryName) {
-        return findOrEmpty(() -> getEntityManager().createNamedQuery(namedQueryName, entityClass).getSingleResult());
+        return timed(namedQueryName, () -> findOrEmpty(() -> getEntityManager().createNamedQuery(namedQueryName, entityClass).getSingleResult()),
+                found -> found.isPresent() ? 1 : 0);
     }
 
     public Optional<E> findSingleByNamedQuery(String namedQueryName, Map<String, Object> parameters) {
@@ -93,9 +406,9 @@ public abstract class AbstractRepository<E, P> {
         TypedQuery<E> query = getEntityManager().createNamedQuery(namedQueryName, entityClass);
         rawParameters.forEach(entry -> query.setParameter(entry.getKey(), entry.getValue()));
         if (entityGraph != null) {
-            query.setHint("javax.persistence.loadgraph", getEntityManager().getEntityGraph(entityGraph));
+            query.setHint(LOAD_GRAPH, getEntityGraph(entityGraph));
         }
-        return findOrEmpty(query::getSingleResult);
+        return timed(namedQueryName, () -> findOrEmpty(query::getSingleResult), found -> found.isPresent() ? 1 : 0);
     }
 
     public List<E> findByNamedQuery(String namedQueryName) {
@@ -117,7 +430,7 @@ public abstract class AbstractRepository<E, P> {
             query.setMaxResults(resultLimit);
         }
         rawParameters.forEach(entry -> query.setParameter(entry.getKey(), entry.getValue()));
-        return query.getResultList();
+        return timed(namedQueryName, (Supplier<List<E>>) query::getResultList, List::size);
     }
 
     public static <E> Optional<E> findOrEmpty(final DaoRetriever<E> retriever) {
@@ -135,4 +448,10 @@ public abstract class AbstractRepository<E, P> {
         E retrieve() throws NoResultException;
     }
 
+    @FunctionalInterface
+    public interface RowConsumer<E> {
+
+        void accept(E entity) throws IOException;
+    }
+
 }
@@ -1,5 +1,6 @@
 package com.udea.lab5.repository;
 
+import com.udea.lab5.cache.EntityCaches;
 import com.udea.lab5.com.udea.lab5.modelo.Authority;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
@@ -9,6 +10,9 @@ public class AuthorityRepository extends AbstractRepository<Authority, String> {
     @Inject
     private EntityManager em;
 
+    @Inject
+    private EntityCaches entityCaches;
+
     @Override
     protected EntityManager getEntityManager() {
         return em;
@@ -17,4 +21,15 @@ public class AuthorityRepository extends AbstractRepository<Authority, String> {
     public AuthorityRepository() {
         super(Authority.class);
     }
+
+    /**
+     * Authorities are immutable reference data, the existing names are read
+     * from the database once and cached. The entity itself isn't cached, it is
+     * a reference in the persistence context of the caller.
+     */
+    @Override
+    public Authority find(String name) {
+        String known = entityCaches.getAuthorityNames().get(name, key -> super.find(key) == null ? null : key);
+        return known == null ? null : em.getReference(Authority.class, known);
+    }
 }
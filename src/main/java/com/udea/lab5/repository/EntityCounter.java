@@ -0,0 +1,146 @@
+package com.udea.lab5.repository;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import javax.annotation.Resource;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+
+/**
+ * Keeps a row counter per entity class so that paginated endpoints don't have
+ * to run a {@code COUNT(*)} on every request.
+ *
+ * <p>
+ * Counters are seeded from the database on first use, adjusted by the
+ * repositories when their transaction commits, and reconciled against the
+ * database once they are older than the configured interval.</p>
+ */
+@ApplicationScoped
+public class EntityCounter {
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    @ConfigProperty(name = "repository.count.reconcileIntervalInSeconds", defaultValue = "300")
+    private long reconcileIntervalInSeconds;
+
+    @Resource
+    private TransactionSynchronizationRegistry transactionRegistry;
+
+    private final ConcurrentMap<Class<?>, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the row count of the entity, reconciling it against the database
+     * when it is missing or stale.
+     *
+     * @param entityClass the entity class
+     * @param databaseCount the {@code COUNT(*)} query of the entity
+     * @return the row count
+     */
+    public long get(Class<?> entityClass, LongSupplier databaseCount) {
+        Counter counter = counters.get(entityClass);
+        if (counter == null || counter.isStale(reconcileIntervalInSeconds * 1000)) {
+            return reconcile(entityClass, databaseCount);
+        }
+        return counter.value.get();
+    }
+
+    /**
+     * Returns the row count of the entity without reconciling a counter that
+     * is already known, so it may lag behind the database.
+     *
+     * @param entityClass the entity class
+     * @param databaseCount the {@code COUNT(*)} query of the entity
+     * @return the estimated row count
+     */
+    public long estimate(Class<?> entityClass, LongSupplier databaseCount) {
+        Counter counter = counters.get(entityClass);
+        if (counter == null) {
+            return reconcile(entityClass, databaseCount);
+        }
+        return counter.value.get();
+    }
+
+    /**
+     * Replaces the counter of the entity with the database count.
+     *
+     * @param entityClass the entity class
+     * @param databaseCount the {@code COUNT(*)} query of the entity
+     * @return the row count
+     */
+    public long reconcile(Class<?> entityClass, LongSupplier databaseCount) {
+        long count = databaseCount.getAsLong();
+        Counter previous = counters.put(entityClass, new Counter(count));
+        if (previous != null && previous.value.get() != count) {
+            log.debug("Reconciled {} count from {} to {}", entityClass.getSimpleName(), previous.value.get(), count);
+        }
+        return count;
+    }
+
+    /**
+     * Adjusts the counter of the entity. Inside a transaction the adjustment is
+     * applied only once the transaction commits.
+     *
+     * @param entityClass the entity class
+     * @param delta the number of rows added (or removed when negative)
+     */
+    public void add(Class<?> entityClass, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        if (transactionRegistry != null && transactionRegistry.getTransactionStatus() == Status.STATUS_ACTIVE) {
+            transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == Status.STATUS_COMMITTED) {
+                        apply(entityClass, delta);
+                    }
+                }
+            });
+        } else {
+            apply(entityClass, delta);
+        }
+    }
+
+    /**
+     * Drops the counter of the entity, the next read goes to the database.
+     *
+     * @param entityClass the entity class
+     */
+    public void invalidate(Class<?> entityClass) {
+        counters.remove(entityClass);
+    }
+
+    private void apply(Class<?> entityClass, long delta) {
+        Counter counter = counters.get(entityClass);
+        if (counter != null) {
+            counter.value.addAndGet(delta);
+        }
+    }
+
+    private static class Counter {
+
+        private final AtomicLong value;
+        private final long reconciledAt = System.currentTimeMillis();
+
+        Counter(long value) {
+            this.value = new AtomicLong(value);
+        }
+
+        boolean isStale(long maxAgeMillis) {
+            return System.currentTimeMillis() - reconciledAt > maxAgeMillis;
+        }
+    }
+}
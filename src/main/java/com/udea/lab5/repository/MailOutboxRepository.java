@@ -0,0 +1,55 @@
+package com.udea.lab5.repository;
+
+import com.udea.lab5.com.udea.lab5.modelo.MailOutbox;
+import java.time.Instant;
+import java.util.List;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.transaction.Transactional;
+import static javax.transaction.Transactional.TxType.REQUIRED;
+
+public class MailOutboxRepository extends AbstractRepository<MailOutbox, Long> {
+
+    @Inject
+    private EntityManager em;
+
+    @Override
+    protected EntityManager getEntityManager() {
+        return em;
+    }
+
+    public MailOutboxRepository() {
+        super(MailOutbox.class);
+    }
+
+    /**
+     * Claims the due e-mails by pushing their next attempt to the end of the
+     * lease, so that a concurrent dispatcher skips them while they are sent.
+     *
+     * @param now the current time
+     * @param batchSize the maximum number of e-mails to claim
+     * @param leaseUntil the time the e-mails are due again if they aren't
+     * sent by then
+     * @return the claimed e-mails
+     */
+    @Transactional(REQUIRED)
+    public List<MailOutbox> claimDue(Instant now, int batchSize, Instant leaseUntil) {
+        List<MailOutbox> due = em.createQuery("select m from MailOutbox m "
+                + "where m.failed = false and m.nextAttemptAt <= :now order by m.id", MailOutbox.class)
+                .setParameter("now", now)
+                .setMaxResults(batchSize)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+        due.forEach(mail -> mail.setNextAttemptAt(leaseUntil));
+        return due;
+    }
+
+    /**
+     * @return the number of e-mails not sent yet, excluding the failed ones
+     */
+    public long countPending() {
+        return em.createQuery("select count(m) from MailOutbox m where m.failed = false", Long.class)
+                .getSingleResult();
+    }
+}
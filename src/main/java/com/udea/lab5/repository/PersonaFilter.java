@@ -0,0 +1,66 @@
+package com.udea.lab5.repository;
+
+/**
+ * Combinable filters of the persona search, a null filter is not applied.
+ * Blank strings are treated as absent, so an empty {@code nombre} prefix can't
+ * turn into a filter that matches every persona.
+ */
+public class PersonaFilter {
+
+    private final String email;
+    private final String nombrePrefix;
+    private final Double minSalario;
+    private final Double maxSalario;
+
+    public PersonaFilter(String email, String nombrePrefix, Double minSalario, Double maxSalario) {
+        this.email = trimToNull(email);
+        this.nombrePrefix = trimToNull(nombrePrefix);
+        this.minSalario = minSalario;
+        this.maxSalario = maxSalario;
+    }
+
+    /**
+     * @return the exact email
+     */
+    public String getEmail() {
+        return email;
+    }
+
+    /**
+     * @return the prefix of the nombre
+     */
+    public String getNombrePrefix() {
+        return nombrePrefix;
+    }
+
+    /**
+     * @return the inclusive lower bound of the salario
+     */
+    public Double getMinSalario() {
+        return minSalario;
+    }
+
+    /**
+     * @return the inclusive upper bound of the salario
+     */
+    public Double getMaxSalario() {
+        return maxSalario;
+    }
+
+    /**
+     * @return true if no filter is applied, so the search would match every
+     * persona
+     */
+    public boolean isEmpty() {
+        return email == null && nombrePrefix == null && minSalario == null && maxSalario == null;
+    }
+
+    private static String trimToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+
+    @Override
+    public String toString() {
+        return "PersonaFilter{" + "email=" + email + ", nombrePrefix=" + nombrePrefix + ", minSalario=" + minSalario + ", maxSalario=" + maxSalario + '}';
+    }
+}
@@ -3,12 +3,30 @@ package com.udea.lab5.repository;
 import javax.persistence.EntityManager;
 import javax.inject.Inject;
 import com.udea.lab5.com.udea.lab5.modelo.Persona;
+import com.udea.lab5.analytics.PersonaChangeEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import javax.enterprise.event.Event;
+import javax.persistence.LockModeType;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.ParameterExpression;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.transaction.Transactional;
+import static javax.transaction.Transactional.TxType.REQUIRED;
 
 public class PersonaRepository extends AbstractRepository<Persona, Long> {
 
     @Inject
     private EntityManager em;
 
+    @Inject
+    private Event<PersonaChangeEvent> changeEvent;
+
     @Override
     protected EntityManager getEntityManager() {
         return em;
@@ -18,4 +36,120 @@ public class PersonaRepository extends AbstractRepository<Persona, Long> {
         super(Persona.class);
     }
 
+    /**
+     * Finds the personas matching the filter, ordered by id.
+     *
+     * @param filter the search filters
+     * @param startPosition the position of the first result
+     * @param size the maximum number of results
+     * @return the matching personas
+     */
+    public List<Persona> search(PersonaFilter filter, int startPosition, int size) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Persona> cq = cb.createQuery(Persona.class);
+        Root<Persona> root = cq.from(Persona.class);
+        cq.select(root).where(predicates(cb, root, filter)).orderBy(cb.asc(root.get("id")));
+        return timed("search", em.createQuery(cq)
+                .setFirstResult(startPosition)
+                .setMaxResults(size)::getResultList, List::size);
+    }
+
+    /**
+     * @param filter the search filters
+     * @return the number of personas matching the filter
+     */
+    public int countSearch(PersonaFilter filter) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Long> cq = cb.createQuery(Long.class);
+        Root<Persona> root = cq.from(Persona.class);
+        cq.select(cb.count(root)).where(predicates(cb, root, filter));
+        return timed("countSearch", em.createQuery(cq)::getSingleResult, count -> 1).intValue();
+    }
+
+    /**
+     * Deletes the personas matching the filter, by chunks of ids paged by
+     * keyset, so only one chunk of ids is held at a time.
+     *
+     * @param filter the search filters
+     * @return the number of deleted rows
+     * @throws IllegalArgumentException if the filter is empty, as it would
+     * delete every persona
+     */
+    @Transactional(REQUIRED)
+    public int removeBySearch(PersonaFilter filter) {
+        if (filter.isEmpty()) {
+            throw new IllegalArgumentException("An empty filter would remove every persona");
+        }
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Long> cq = cb.createQuery(Long.class);
+        Root<Persona> root = cq.from(Persona.class);
+        ParameterExpression<Long> after = cb.parameter(Long.class);
+        List<Predicate> predicates = new ArrayList<>(Arrays.asList(predicates(cb, root, filter)));
+        predicates.add(cb.greaterThan(root.<Long>get("id"), after));
+        cq.select(root.<Long>get("id"))
+                .where(predicates.toArray(new Predicate[predicates.size()]))
+                .orderBy(cb.asc(root.get("id")));
+        TypedQuery<Long> query = em.createQuery(cq)
+                .setMaxResults(DELETE_CHUNK_SIZE)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE);
+        int deleted = 0;
+        long lastId = Long.MIN_VALUE;
+        List<Long> chunk;
+        while (!(chunk = query.setParameter(after, lastId).getResultList()).isEmpty()) {
+            deleted += removeLocked(chunk);
+            lastId = chunk.get(chunk.size() - 1);
+        }
+        return deleted;
+    }
+
+    /**
+     * The bulk {@code DELETE} bypasses the entity listeners, the removals are
+     * published here instead. The existing ids are locked before the delete,
+     * so a removal is only published for a persona that was actually deleted.
+     */
+    @Override
+    @Transactional(REQUIRED)
+    public int removeAll(Collection<Long> ids) {
+        List<Long> keys = new ArrayList<>(ids);
+        int deleted = 0;
+        for (int from = 0; from < keys.size(); from += DELETE_CHUNK_SIZE) {
+            List<Long> chunk = keys.subList(from, Math.min(keys.size(), from + DELETE_CHUNK_SIZE));
+            deleted += removeLocked(em.createQuery("select p.id from Persona p where p.id in :ids", Long.class)
+                    .setParameter("ids", chunk)
+                    .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                    .getResultList());
+        }
+        return deleted;
+    }
+
+    private int removeLocked(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        int deleted = super.removeAll(ids);
+        ids.forEach(id -> changeEvent.fire(PersonaChangeEvent.removed(id)));
+        return deleted;
+    }
+
+    private Predicate[] predicates(CriteriaBuilder cb, Root<Persona> root, PersonaFilter filter) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (filter.getEmail() != null) {
+            predicates.add(cb.equal(root.get("email"), filter.getEmail()));
+        }
+        if (filter.getNombrePrefix() != null) {
+            predicates.add(cb.like(root.<String>get("nombre"), escapeLike(filter.getNombrePrefix()) + "%", '\\'));
+        }
+        if (filter.getMinSalario() != null) {
+            predicates.add(cb.ge(root.<Double>get("salario"), filter.getMinSalario()));
+        }
+        if (filter.getMaxSalario() != null) {
+            predicates.add(cb.le(root.<Double>get("salario"), filter.getMaxSalario()));
+        }
+        return predicates.toArray(new Predicate[predicates.size()]);
+    }
+
+    private String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
 }
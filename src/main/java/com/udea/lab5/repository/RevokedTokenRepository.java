@@ -0,0 +1,41 @@
+package com.udea.lab5.repository;
+
+import com.udea.lab5.com.udea.lab5.modelo.RevokedToken;
+import java.time.Instant;
+import java.util.List;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import static javax.transaction.Transactional.TxType.REQUIRED;
+
+public class RevokedTokenRepository extends AbstractRepository<RevokedToken, String> {
+
+    @Inject
+    private EntityManager em;
+
+    @Override
+    protected EntityManager getEntityManager() {
+        return em;
+    }
+
+    public RevokedTokenRepository() {
+        super(RevokedToken.class);
+    }
+
+    public List<RevokedToken> findUnexpired(Instant now) {
+        return timed("findUnexpired", em.createQuery("select t from RevokedToken t where t.expiresAt > :now", RevokedToken.class)
+                .setParameter("now", now)::getResultList, List::size);
+    }
+
+    /**
+     * @param now the current time
+     * @return the number of deleted revocations
+     */
+    @Transactional(REQUIRED)
+    public int removeExpired(Instant now) {
+        int deleted = timed("removeExpired", em.createQuery("delete from RevokedToken t where t.expiresAt <= :now")
+                .setParameter("now", now)::executeUpdate, Integer::longValue);
+        adjustCount(-deleted);
+        return deleted;
+    }
+}
@@ -1,9 +1,15 @@
 package com.udea.lab5.repository;
 
+import com.udea.lab5.cache.EntityCaches;
 import com.udea.lab5.com.udea.lab5.modelo.User;
+import com.udea.lab5.security.Credential;
 import static java.util.Collections.singletonMap;
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
+import javax.persistence.Query;
 import java.util.Optional;
+import static java.util.stream.Collectors.toSet;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
 
@@ -12,6 +18,9 @@ public class UserRepository extends AbstractRepository<User, Long> {
     @Inject
     private EntityManager em;
 
+    @Inject
+    private EntityCaches entityCaches;
+
     @Override
     protected EntityManager getEntityManager() {
         return em;
@@ -21,8 +30,43 @@ public class UserRepository extends AbstractRepository<User, Long> {
         super(User.class);
     }
 
+    /**
+     * The login is resolved to the user id through the cache, the user itself
+     * is then found by id, which is served by the persistence provider's shared
+     * cache and returns a managed instance safe to modify.
+     *
+     * @param login the user login
+     * @return the user
+     */
     public Optional<User> findOneByLogin(String login) {
-        return findSingleByNamedQuery("findUserByLogin", singletonMap("login", login));
+        Long id = entityCaches.getUserIdsByLogin().get(login, key
+                -> findSingleByNamedQuery("findUserByLogin", singletonMap("login", key)).map(User::getId).orElse(null));
+        Optional<User> user = Optional.ofNullable(id).map(this::find);
+        if (id != null && !user.isPresent()) {
+            entityCaches.evictUser(login);
+        }
+        return user;
+    }
+
+    /**
+     * The credential is read with a projection instead of the user entity and
+     * its authorities graph, and cached until the user changes.
+     *
+     * @param login the user login
+     * @return the credential of the user
+     */
+    public Optional<Credential> findCredentialByLogin(String login) {
+        return Optional.ofNullable(entityCaches.getCredentialsByLogin().get(login, key -> {
+            List<Object[]> rows = timed("findCredentialByLogin", em.createQuery("select u.login, u.password, u.activated, a.name from User u "
+                    + "left join u.authorities a where u.login = :login", Object[].class)
+                    .setParameter("login", key)::getResultList, List::size);
+            if (rows.isEmpty()) {
+                return null;
+            }
+            Object[] first = rows.get(0);
+            return new Credential((String) first[0], (String) first[1], (Boolean) first[2],
+                    rows.stream().map(row -> (String) row[3]).filter(Objects::nonNull).collect(toSet()));
+        }));
     }
 
     public Optional<User> findOneByEmail(String email) {
@@ -49,8 +93,35 @@ public class UserRepository extends AbstractRepository<User, Long> {
         return findSingleByNamedQuery("findUserByLogin", "graph.user.authorities", singletonMap("login", login));
     }
 
+    public List<Long> findIdsByLogins(Collection<String> logins) {
+        return em.createQuery("select u.id from User u where u.login in :logins", Long.class)
+                .setParameter("logins", logins)
+                .getResultList();
+    }
+
+    /**
+     * The JPQL {@code DELETE} doesn't cascade to the user_authority join
+     * table, its rows are deleted first.
+     */
+    @Override
+    protected void beforeRemoveAll(List<Long> ids) {
+        StringBuilder sql = new StringBuilder("DELETE FROM user_authority WHERE user_id IN (");
+        for (int i = 1; i <= ids.size(); i++) {
+            sql.append(i > 1 ? ", ?" : "?").append(i);
+        }
+        Query query = em.createNativeQuery(sql.append(')').toString());
+        for (int i = 0; i < ids.size(); i++) {
+            query.setParameter(i + 1, ids.get(i));
+        }
+        query.executeUpdate();
+    }
+
     public List<User> getUsersWithAuthorities(int startPosition, int size) {
         return findRange(startPosition, size, "graph.user.authorities");
     }
 
+    public List<User> getUsersWithAuthoritiesAfter(Long after, int size) {
+        return findRangeAfter(after, size, "graph.user.authorities");
+    }
+
 }
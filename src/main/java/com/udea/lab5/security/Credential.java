@@ -0,0 +1,50 @@
+package com.udea.lab5.security;
+
+import java.util.Set;
+
+/**
+ * What the authentication needs to know about a user: its password hash,
+ * whether it is activated and its authority names.
+ */
+public class Credential {
+
+    private final String login;
+
+    private final String passwordHash;
+
+    private final boolean activated;
+
+    private final Set<String> groups;
+
+    public Credential(String login, String passwordHash, boolean activated, Set<String> groups) {
+        this.login = login;
+        this.passwordHash = passwordHash;
+        this.activated = activated;
+        this.groups = groups;
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public String getPasswordHash() {
+        return passwordHash;
+    }
+
+    public boolean isActivated() {
+        return activated;
+    }
+
+    public Set<String> getGroups() {
+        return groups;
+    }
+
+    @Override
+    public String toString() {
+        return "Credential{"
+                + "login='" + login + '\''
+                + ", activated=" + activated
+                + ", groups=" + groups
+                + "}";
+    }
+}
@@ -0,0 +1,52 @@
+package com.udea.lab5.security;
+
+import javax.annotation.Priority;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Alternative;
+import javax.inject.Inject;
+import javax.interceptor.Interceptor;
+import javax.security.enterprise.AuthenticationStatus;
+import javax.security.enterprise.authentication.mechanism.http.HttpAuthenticationMechanism;
+import javax.security.enterprise.authentication.mechanism.http.HttpMessageContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import static javax.ws.rs.core.HttpHeaders.AUTHORIZATION;
+
+/**
+ * Authenticates the requests carrying a bearer token.
+ *
+ * <p>
+ * Takes precedence over the MP-JWT mechanism declared on the application, so
+ * that the {@code @RolesAllowed} resources go through the cached
+ * {@link TokenVerifier}.</p>
+ *
+ * <p>
+ * The verified token is kept as a request attribute, for the resources that
+ * need its claims.</p>
+ */
+@Alternative
+@Priority(Interceptor.Priority.APPLICATION)
+@ApplicationScoped
+public class JWTAuthenticationMechanism implements HttpAuthenticationMechanism {
+
+    private static final String BEARER = "Bearer ";
+
+    @Inject
+    private TokenVerifier tokenVerifier;
+
+    @Override
+    public AuthenticationStatus validateRequest(HttpServletRequest request, HttpServletResponse response,
+            HttpMessageContext context) {
+        String authorization = request.getHeader(AUTHORIZATION);
+        if (authorization == null || !authorization.regionMatches(true, 0, BEARER, 0, BEARER.length())) {
+            return context.doNothing();
+        }
+        VerifiedToken token = tokenVerifier.verify(authorization.substring(BEARER.length()).trim());
+        if (token == null) {
+            return context.responseUnauthorized();
+        }
+        request.setAttribute(VerifiedToken.class.getName(), token);
+        return context.notifyContainerAboutLogin(token.getSubject(), token.getGroups());
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.udea.lab5.security;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The legacy unsalted MD5 hashes, 32 hexadecimal characters. Only kept to
+ * verify the hashes not migrated yet.
+ */
+public class Md5PasswordHasher implements PasswordHasher {
+
+    public static final String ID = "md5";
+
+    private static final int LENGTH = 32;
+
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+    @Override
+    public boolean supports(String encoded) {
+        return encoded.length() == LENGTH && encoded.chars().allMatch(c -> Character.digit(c, 16) >= 0);
+    }
+
+    @Override
+    public String encode(String rawPassword) {
+        try {
+            byte[] bytes = MessageDigest.getInstance("MD5").digest(rawPassword.getBytes(UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < bytes.length; i++) {
+                sb.append(Integer.toString((bytes[i] & 0xff) + 0x100, 16).substring(1));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @Override
+    public boolean matches(String rawPassword, String encoded) {
+        return MessageDigest.isEqual(encode(rawPassword).getBytes(UTF_8), encoded.toLowerCase().getBytes(UTF_8));
+    }
+
+    @Override
+    public boolean needsRehash(String encoded) {
+        return false;
+    }
+}
@@ -1,35 +1,133 @@
 package com.udea.lab5.security;
 
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import com.udea.lab5.metrics.MeteredExecutor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Any;
+import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricRegistry;
 import org.slf4j.Logger;
 
+/**
+ * Encodes the passwords with the configured {@link PasswordHasher}, and
+ * verifies them with whichever hasher recognizes the stored hash.
+ *
+ * <p>
+ * Hashing is deliberately slow, so it runs on a dedicated bounded pool: a
+ * login burst waits in its queue, or is rejected once the queue is full,
+ * instead of taking the CPU from the other requests.</p>
+ */
+@ApplicationScoped
 public class PasswordEncoder {
 
     @Inject
     private Logger log;
 
-    public String encode(String passwordToHash) {
-        String generatedPassword = null;
-        try {
-            // Create MessageDigest instance for MD5
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            //Add password bytes to digest
-            md.update(passwordToHash.getBytes());
-            //Get the hash's bytes 
-            byte[] bytes = md.digest();
-            //This bytes[] has bytes in decimal format;
-            //Convert it to hexadecimal format
-            StringBuilder sb = new StringBuilder();
-            for (int i = 0; i < bytes.length; i++) {
-                sb.append(Integer.toString((bytes[i] & 0xff) + 0x100, 16).substring(1));
-            }
-            //Get complete hashed password in hex format
-            generatedPassword = sb.toString();
-        } catch (NoSuchAlgorithmException e) {
-            log.info("No Such algorithm: " + e.getMessage());
+    @Inject
+    @Any
+    private Instance<PasswordHasher> hashers;
+
+    @Inject
+    private MetricRegistry registry;
+
+    @Resource
+    private ManagedThreadFactory threadFactory;
+
+    @Inject
+    @ConfigProperty(name = "security.password.hasher", defaultValue = Pbkdf2PasswordHasher.ID)
+    private String hasherId;
+
+    @Inject
+    @ConfigProperty(name = "security.password.hashing.threads", defaultValue = "4")
+    private int threads;
+
+    @Inject
+    @ConfigProperty(name = "security.password.hashing.queueCapacity", defaultValue = "100")
+    private int queueCapacity;
+
+    @Inject
+    @ConfigProperty(name = "security.password.hashing.retryAfterInSeconds", defaultValue = "1")
+    private long retryAfterInSeconds;
+
+    private final List<PasswordHasher> available = new ArrayList<>();
+
+    private PasswordHasher hasher;
+
+    private MeteredExecutor executor;
+
+    private String dummyHash;
+
+    @PostConstruct
+    public void init() {
+        hashers.forEach(available::add);
+        hasher = available.stream()
+                .filter(candidate -> candidate.getId().equals(hasherId))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Unknown password hasher " + hasherId));
+        executor = new MeteredExecutor("passwordHashing", threads, queueCapacity, retryAfterInSeconds, threadFactory, registry);
+        dummyHash = hasher.encode(UUID.randomUUID().toString());
+        log.debug("Hashing passwords with {}", hasherId);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    /**
+     * @param rawPassword the password
+     * @return the hash of the configured hasher
+     * @throws java.util.concurrent.RejectedExecutionException if the hashing
+     * queue is full
+     */
+    public String encode(String rawPassword) {
+        return executor.call(() -> hasher.encode(rawPassword));
+    }
+
+    /**
+     * @param rawPassword the password
+     * @param encoded the stored hash, in any of the supported formats
+     * @return true if the password matches the hash
+     * @throws java.util.concurrent.RejectedExecutionException if the hashing
+     * queue is full
+     */
+    public boolean matches(String rawPassword, String encoded) {
+        if (rawPassword == null || encoded == null) {
+            return false;
         }
-        return generatedPassword;
+        return available.stream()
+                .filter(candidate -> candidate.supports(encoded))
+                .findFirst()
+                .map(candidate -> executor.call(() -> candidate.matches(rawPassword, encoded)))
+                .orElse(false);
+    }
+
+    /**
+     * Checks the password against a hash no user has, so a login that doesn't
+     * exist takes as long to reject as a wrong password.
+     *
+     * @param rawPassword the password
+     * @throws java.util.concurrent.RejectedExecutionException if the hashing
+     * queue is full
+     */
+    public void matchesNone(String rawPassword) {
+        matches(rawPassword == null ? "" : rawPassword, dummyHash);
+    }
+
+    /**
+     * @param encoded the stored hash
+     * @return true if the hash isn't from the configured hasher, or is weaker
+     * than its current parameters
+     */
+    public boolean needsRehash(String encoded) {
+        return !hasher.supports(encoded) || hasher.needsRehash(encoded);
     }
 }
@@ -0,0 +1,41 @@
+package com.udea.lab5.security;
+
+/**
+ * A password hashing scheme. The encoded hashes are self-describing, so each
+ * hasher recognizes its own and several schemes can coexist while the stored
+ * hashes are migrated.
+ */
+public interface PasswordHasher {
+
+    /**
+     * @return the identifier of the scheme, as configured in
+     * {@code security.password.hasher}
+     */
+    String getId();
+
+    /**
+     * @param encoded the stored hash
+     * @return true if the hash is in the format of this scheme
+     */
+    boolean supports(String encoded);
+
+    /**
+     * @param rawPassword the password
+     * @return the encoded hash, salt and parameters included
+     */
+    String encode(String rawPassword);
+
+    /**
+     * @param rawPassword the password
+     * @param encoded the stored hash
+     * @return true if the password matches the hash
+     */
+    boolean matches(String rawPassword, String encoded);
+
+    /**
+     * @param encoded the stored hash, in the format of this scheme
+     * @return true if the hash was encoded with weaker parameters than the
+     * current ones
+     */
+    boolean needsRehash(String encoded);
+}
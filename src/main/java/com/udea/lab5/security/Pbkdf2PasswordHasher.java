@@ -0,0 +1,90 @@
+package com.udea.lab5.security;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Salted PBKDF2 with HMAC-SHA256, encoded as
+ * {@code $pbkdf2-sha256$<iterations>$<salt>$<hash>} with the salt and hash in
+ * Base64.
+ */
+public class Pbkdf2PasswordHasher implements PasswordHasher {
+
+    public static final String ID = "pbkdf2";
+
+    private static final String PREFIX = "$pbkdf2-sha256$";
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+
+    private static final int SALT_LENGTH = 16;
+
+    private static final int HASH_LENGTH = 32;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    @Inject
+    @ConfigProperty(name = "security.password.pbkdf2.iterations", defaultValue = "310000")
+    private int iterations;
+
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+    @Override
+    public boolean supports(String encoded) {
+        return encoded.startsWith(PREFIX);
+    }
+
+    @Override
+    public String encode(String rawPassword) {
+        byte[] salt = new byte[SALT_LENGTH];
+        RANDOM.nextBytes(salt);
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations
+                + '$' + base64.encodeToString(salt)
+                + '$' + base64.encodeToString(hash(rawPassword, salt, iterations, HASH_LENGTH));
+    }
+
+    @Override
+    public boolean matches(String rawPassword, String encoded) {
+        String[] parts = encoded.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 3) {
+            return false;
+        }
+        try {
+            byte[] salt = Base64.getDecoder().decode(parts[1]);
+            byte[] expected = Base64.getDecoder().decode(parts[2]);
+            return MessageDigest.isEqual(expected, hash(rawPassword, salt, Integer.parseInt(parts[0]), expected.length));
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean needsRehash(String encoded) {
+        String[] parts = encoded.substring(PREFIX.length()).split("\\$");
+        try {
+            return parts.length != 3 || Integer.parseInt(parts[0]) < iterations;
+        } catch (NumberFormatException ex) {
+            return true;
+        }
+    }
+
+    private static byte[] hash(String rawPassword, byte[] salt, int iterations, int length) {
+        PBEKeySpec spec = new PBEKeySpec(rawPassword.toCharArray(), salt, iterations, length * 8);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.udea.lab5.security;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+import static java.lang.Thread.currentThread;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+
+/**
+ * Reads the PEM encoded signing keys from the classpath.
+ */
+public final class PemKeyReader {
+
+    private PemKeyReader() {
+    }
+
+    /**
+     * @param resourceName the PKCS#8 PEM resource
+     * @param algorithm the JWS algorithm the key is used with
+     * @return the private key
+     * @throws Exception if the key can't be read
+     */
+    public static PrivateKey readPrivateKey(String resourceName, SignatureAlgorithm algorithm) throws Exception {
+        return keyFactory(algorithm).generatePrivate(new PKCS8EncodedKeySpec(read(resourceName)));
+    }
+
+    /**
+     * @param resourceName the X.509 PEM resource
+     * @param algorithm the JWS algorithm the key is used with
+     * @return the public key
+     * @throws Exception if the key can't be read
+     */
+    public static PublicKey readPublicKey(String resourceName, SignatureAlgorithm algorithm) throws Exception {
+        return keyFactory(algorithm).generatePublic(new X509EncodedKeySpec(read(resourceName)));
+    }
+
+    /**
+     * @param name the JWS algorithm name
+     * @return the asymmetric algorithm
+     * @throws IllegalArgumentException if the algorithm is unknown or not
+     * asymmetric
+     */
+    public static SignatureAlgorithm algorithm(String name) {
+        SignatureAlgorithm algorithm = SignatureAlgorithm.forName(name.trim());
+        if (!algorithm.isRsa() && !algorithm.isEllipticCurve()) {
+            throw new IllegalArgumentException("Unsupported token signature algorithm " + name);
+        }
+        return algorithm;
+    }
+
+    private static KeyFactory keyFactory(SignatureAlgorithm algorithm) throws Exception {
+        return KeyFactory.getInstance(algorithm.isEllipticCurve() ? "EC" : "RSA");
+    }
+
+    private static byte[] read(String resourceName) throws Exception {
+        byte[] byteBuffer = new byte[16384];
+        int length = currentThread().getContextClassLoader()
+                .getResource(resourceName)
+                .openStream()
+                .read(byteBuffer);
+
+        String key = new String(byteBuffer, 0, length)
+                .replaceAll("-----BEGIN (.*)-----", "")
+                .replaceAll("-----END (.*)----", "")
+                .replaceAll("\r\n", "")
+                .replaceAll("\n", "")
+                .trim();
+
+        return Base64.getDecoder().decode(key);
+    }
+}
@@ -5,10 +5,7 @@ import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import static io.jsonwebtoken.Header.JWT_TYPE;
 import static io.jsonwebtoken.Header.TYPE;
-import static java.lang.Thread.currentThread;
-import java.security.KeyFactory;
 import java.security.PrivateKey;
-import java.security.spec.PKCS8EncodedKeySpec;
 import java.util.*;
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
@@ -17,6 +14,8 @@ import org.slf4j.Logger;
 
 public class TokenProvider {
 
+    private SignatureAlgorithm algorithm;
+
     private PrivateKey privateKey;
 
     private String issuer;
@@ -34,9 +33,10 @@ public class TokenProvider {
     @PostConstruct
     public void init() {
         try {
-            this.privateKey = readPrivateKey("privateKey.pem");
+            this.algorithm = PemKeyReader.algorithm(securityConfig.getSignAlgorithm());
+            this.privateKey = PemKeyReader.readPrivateKey(securityConfig.getPrivateKeyLocation(), algorithm);
         } catch (Exception ex) {
-            log.error("Unable to read privateKey.pem ", ex);
+            log.error("Unable to read {} ", securityConfig.getPrivateKeyLocation(), ex);
             throw new IllegalStateException(ex);
         }
 
@@ -60,26 +60,8 @@ public class TokenProvider {
                 .setIssuer(issuer)
                 .setIssuedAt(new Date(issuedTime))
                 .setExpiration(new Date(expirationTime))
-                .signWith(SignatureAlgorithm.RS256, privateKey)
+                .signWith(algorithm, privateKey)
                 .compact();
     }
 
-    private PrivateKey readPrivateKey(String resourceName) throws Exception {
-        byte[] byteBuffer = new byte[16384];
-        int length = currentThread().getContextClassLoader()
-                .getResource(resourceName)
-                .openStream()
-                .read(byteBuffer);
-
-        String key = new String(byteBuffer, 0, length)
-                .replaceAll("-----BEGIN (.*)-----", "")
-                .replaceAll("-----END (.*)----", "")
-                .replaceAll("\r\n", "")
-                .replaceAll("\n", "")
-                .trim();
-
-        return KeyFactory.getInstance("RSA")
-                .generatePrivate(new PKCS8EncodedKeySpec(Base64.getDecoder().decode(key)));
-    }
-
 }
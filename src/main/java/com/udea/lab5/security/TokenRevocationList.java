@@ -0,0 +1,157 @@
+package com.udea.lab5.security;
+
+import com.udea.lab5.com.udea.lab5.modelo.RevokedToken;
+import com.udea.lab5.repository.RevokedTokenRepository;
+import com.udea.lab5.util.BloomFilter;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+
+/**
+ * The tokens revoked before their expiration, by jti.
+ *
+ * <p>
+ * Revocations are persisted, loaded on startup and reloaded periodically, so
+ * the revocations made on the other nodes are picked up. The per-request check
+ * is lock-free: a Bloom filter rules out almost every token, and only a
+ * possible match is confirmed against the exact set. Revocations are purged
+ * on a timer once the token has expired, since the expiration check rejects
+ * it anyway.</p>
+ */
+@ApplicationScoped
+public class TokenRevocationList {
+
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Inject
+    @ConfigProperty(name = "security.revocation.expectedTokens", defaultValue = "100000")
+    private int expectedTokens;
+
+    @Inject
+    @ConfigProperty(name = "security.revocation.purgeIntervalInSeconds", defaultValue = "3600")
+    private long purgeIntervalInSeconds;
+
+    @Inject
+    @ConfigProperty(name = "security.revocation.reloadIntervalInSeconds", defaultValue = "60")
+    private long reloadIntervalInSeconds;
+
+    @Resource
+    private ManagedScheduledExecutorService scheduler;
+
+    private final ConcurrentMap<String, Long> expirationTimes = new ConcurrentHashMap<>();
+
+    private volatile BloomFilter bloomFilter;
+
+    private final List<ScheduledFuture<?>> tasks = new ArrayList<>();
+
+    @PostConstruct
+    public void init() {
+        rebuildBloomFilter();
+        reload();
+        log.debug("Loaded {} revoked tokens", expirationTimes.size());
+        tasks.add(scheduler.scheduleWithFixedDelay(() -> run("reload", this::reload),
+                reloadIntervalInSeconds, reloadIntervalInSeconds, TimeUnit.SECONDS));
+        tasks.add(scheduler.scheduleWithFixedDelay(() -> run("purge", this::purge),
+                purgeIntervalInSeconds, purgeIntervalInSeconds, TimeUnit.SECONDS));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        tasks.forEach(task -> task.cancel(false));
+    }
+
+    /**
+     * @param jti the token id
+     * @return true if the token has been revoked
+     */
+    public boolean isRevoked(String jti) {
+        return jti != null && bloomFilter.mightContain(jti) && expirationTimes.containsKey(jti);
+    }
+
+    /**
+     * Revokes the token until its expiration.
+     *
+     * @param jti the token id
+     * @param expirationTime the expiration time of the token, in milliseconds
+     * since the epoch
+     */
+    public synchronized void revoke(String jti, long expirationTime) {
+        long now = System.currentTimeMillis();
+        if (jti == null || expirationTime <= now || expirationTimes.containsKey(jti)) {
+            return;
+        }
+        revokedTokenRepository.create(new RevokedToken(jti, Instant.ofEpochMilli(expirationTime)));
+        add(jti, expirationTime);
+    }
+
+    /**
+     * Adds the revocations persisted since the last reload, including the ones
+     * made on the other nodes. A revocation is never lifted before it expires,
+     * so the known ones are kept.
+     */
+    private synchronized void reload() {
+        int added = 0;
+        for (RevokedToken revokedToken : revokedTokenRepository.findUnexpired(Instant.now())) {
+            if (!expirationTimes.containsKey(revokedToken.getJti())) {
+                add(revokedToken.getJti(), revokedToken.getExpiresAt().toEpochMilli());
+                added++;
+            }
+        }
+        if (added > 0) {
+            log.debug("Reloaded {} token revocations", added);
+        }
+    }
+
+    private synchronized void purge() {
+        long now = System.currentTimeMillis();
+        expirationTimes.values().removeIf(expirationTime -> expirationTime <= now);
+        int deleted = revokedTokenRepository.removeExpired(Instant.ofEpochMilli(now));
+        rebuildBloomFilter();
+        log.debug("Purged {} expired token revocations", deleted);
+    }
+
+    private void add(String jti, long expirationTime) {
+        // the exact set first, a Bloom filter hit must always be confirmed by it
+        expirationTimes.put(jti, expirationTime);
+        bloomFilter.put(jti);
+    }
+
+    /**
+     * Keeps the periodic task scheduled when one run fails.
+     */
+    private void run(String taskName, Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException ex) {
+            log.warn("Token revocation {} failed: {}", taskName, ex.getMessage());
+        }
+    }
+
+    /**
+     * A fresh filter sheds the bits of the expired revocations, it is sized
+     * for at least twice the current revocations so it doesn't saturate.
+     */
+    private void rebuildBloomFilter() {
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedTokens, expirationTimes.size() * 2), FALSE_POSITIVE_PROBABILITY);
+        expirationTimes.keySet().forEach(rebuilt::put);
+        bloomFilter = rebuilt;
+    }
+}
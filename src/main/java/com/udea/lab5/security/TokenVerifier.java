@@ -0,0 +1,137 @@
+package com.udea.lab5.security;
+
+import com.udea.lab5.cache.MeteredCache;
+import com.udea.lab5.config.SecurityConfig;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.UnsupportedJwtException;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.util.*;
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.slf4j.Logger;
+
+/**
+ * Verifies the bearer tokens issued by {@link TokenProvider}.
+ *
+ * <p>
+ * The verified claims are cached by the SHA-256 digest of the token, the
+ * signature of a token found in the cache is not checked again. A cached
+ * token is never used past its own expiration.</p>
+ *
+ * <p>
+ * Every algorithm of {@code mp.jwt.verify.algorithms} is accepted, each with
+ * its own public key, so the signing algorithm can be switched without
+ * invalidating the tokens already issued.</p>
+ *
+ * <p>
+ * The revocation is checked on every request, cached or not.</p>
+ */
+@ApplicationScoped
+public class TokenVerifier {
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private SecurityConfig securityConfig;
+
+    @Inject
+    private MetricRegistry registry;
+
+    @Inject
+    private TokenRevocationList tokenRevocationList;
+
+    @Inject
+    @ConfigProperty(name = "cache.token.maxSize", defaultValue = "10000")
+    private int tokenMaxSize;
+
+    private final Map<String, PublicKey> publicKeys = new HashMap<>();
+
+    private MeteredCache<String, VerifiedToken> verifiedTokens;
+
+    @PostConstruct
+    public void init() {
+        for (String name : securityConfig.getVerifyAlgorithms()) {
+            SignatureAlgorithm algorithm = PemKeyReader.algorithm(name);
+            String location = securityConfig.getPublicKeyLocation(algorithm.getValue());
+            try {
+                publicKeys.put(algorithm.getValue(), PemKeyReader.readPublicKey(location, algorithm));
+            } catch (Exception ex) {
+                log.error("Unable to read {} ", location, ex);
+                throw new IllegalStateException(ex);
+            }
+        }
+        verifiedTokens = new MeteredCache<>("token", tokenMaxSize, registry);
+    }
+
+    /**
+     * @param token the compact JWT
+     * @return the verified claims, or null if the token is invalid, expired
+     * or revoked
+     */
+    public VerifiedToken verify(String token) {
+        String digest = digest(token);
+        VerifiedToken verified = verifiedTokens.get(digest, key -> parse(token));
+        if (verified != null && verified.isExpired()) {
+            verifiedTokens.invalidate(digest);
+            return null;
+        }
+        if (verified != null && tokenRevocationList.isRevoked(verified.getId())) {
+            return null;
+        }
+        return verified;
+    }
+
+    @SuppressWarnings("unchecked")
+    private VerifiedToken parse(String token) {
+        try {
+            Claims claims = Jwts.parser()
+                    .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                        // jjwt 0.9 declares the header as a raw type
+                        @Override
+                        @SuppressWarnings("rawtypes")
+                        public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                            PublicKey publicKey = publicKeys.get(header.getAlgorithm());
+                            if (publicKey == null) {
+                                throw new UnsupportedJwtException("Unsupported token signature algorithm " + header.getAlgorithm());
+                            }
+                            return publicKey;
+                        }
+                    })
+                    .requireIssuer(securityConfig.getIssuer())
+                    .parseClaimsJws(token)
+                    .getBody();
+            if (claims.getSubject() == null || claims.getExpiration() == null) {
+                return null;
+            }
+            Collection<String> groups = claims.get(org.eclipse.microprofile.jwt.Claims.groups.name(), Collection.class);
+            return new VerifiedToken(claims.getId(), claims.getSubject(),
+                    groups == null ? Collections.emptySet() : Collections.unmodifiableSet(new HashSet<>(groups)),
+                    claims.getExpiration().getTime());
+        } catch (JwtException | IllegalArgumentException ex) {
+            log.debug("Invalid token: {}", ex.getMessage());
+            return null;
+        }
+    }
+
+    private static String digest(String token) {
+        try {
+            return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(token.getBytes(UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+}
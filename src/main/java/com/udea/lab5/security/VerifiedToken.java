@@ -0,0 +1,52 @@
+package com.udea.lab5.security;
+
+import java.util.Set;
+
+/**
+ * The claims of a bearer token whose signature, issuer and expiration have
+ * been verified.
+ */
+public class VerifiedToken {
+
+    private final String id;
+
+    private final String subject;
+
+    private final Set<String> groups;
+
+    private final long expirationTime;
+
+    public VerifiedToken(String id, String subject, Set<String> groups, long expirationTime) {
+        this.id = id;
+        this.subject = subject;
+        this.groups = groups;
+        this.expirationTime = expirationTime;
+    }
+
+    /**
+     * @return the jti claim
+     */
+    public String getId() {
+        return id;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public Set<String> getGroups() {
+        return groups;
+    }
+
+    /**
+     * @return the expiration time of the token, in milliseconds since the
+     * epoch
+     */
+    public long getExpirationTime() {
+        return expirationTime;
+    }
+
+    public boolean isExpired() {
+        return System.currentTimeMillis() >= expirationTime;
+    }
+}
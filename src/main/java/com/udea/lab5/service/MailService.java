@@ -1,18 +1,25 @@
 package com.udea.lab5.service;
 
+import com.udea.lab5.com.udea.lab5.modelo.MailOutbox;
 import com.udea.lab5.com.udea.lab5.modelo.User;
-import com.udea.lab5.mail.MailEvent;
+import com.udea.lab5.metrics.Traced;
+import com.udea.lab5.repository.MailOutboxRepository;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.event.Event;
 import javax.inject.Inject;
+import javax.transaction.Transactional;
+import static javax.transaction.Transactional.TxType.REQUIRED;
 import org.slf4j.Logger;
 
 /**
  * Service for sending e-mails.
  * <p>
- * CDI events is used to send e-mails asynchronously.
+ * The e-mails are queued in the outbox, in the transaction of the caller, and
+ * sent in the background by the {@link com.udea.lab5.mail.MailOutboxDispatcher}
+ * once it commits.
  * </p>
  */
+@Traced
 @ApplicationScoped
 public class MailService {
 
@@ -20,21 +27,32 @@ public class MailService {
     private Logger log;
 
     @Inject
-    private Event<MailEvent> eventProducer;
+    private MailOutboxRepository mailOutboxRepository;
 
+    @Inject
+    private Event<MailOutbox> mailQueued;
+
+    @Transactional(REQUIRED)
     public void sendActivationEmail(User user) {
         log.debug("Sending activation e-mail to '{}'", user.getEmail());
-        eventProducer.fireAsync(new MailEvent(user, "email.activation.title", "activationEmail"));
+        queue(new MailOutbox(user.getId(), "email.activation.title", "activationEmail"));
     }
 
+    @Transactional(REQUIRED)
     public void sendCreationEmail(User user) {
         log.debug("Sending creation e-mail to '{}'", user.getEmail());
-        eventProducer.fireAsync(new MailEvent(user, "email.creation.title", "creationEmail"));
+        queue(new MailOutbox(user.getId(), "email.creation.title", "creationEmail"));
     }
 
+    @Transactional(REQUIRED)
     public void sendPasswordResetMail(User user) {
         log.debug("Sending password reset e-mail to '{}'", user.getEmail());
-        eventProducer.fireAsync(new MailEvent(user, "email.reset.title", "passwordResetEmail"));
+        queue(new MailOutbox(user.getId(), "email.reset.title", "passwordResetEmail"));
+    }
+
+    private void queue(MailOutbox mail) {
+        mailOutboxRepository.create(mail);
+        mailQueued.fire(mail);
     }
 
 }
@@ -0,0 +1,200 @@
+package com.udea.lab5.service;
+
+import com.udea.lab5.com.udea.lab5.modelo.Persona;
+import com.udea.lab5.metrics.Traced;
+import com.udea.lab5.repository.PersonaRepository;
+import com.udea.lab5.service.dto.BulkImportDTO;
+import com.udea.lab5.service.dto.BulkImportDTO.Chunk;
+import com.udea.lab5.service.dto.BulkImportDTO.RowError;
+import com.udea.lab5.util.CsvUtil;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import static java.util.stream.Collectors.joining;
+import javax.inject.Inject;
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
+import javax.json.bind.JsonbException;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import org.slf4j.Logger;
+
+/**
+ * Service class for importing personas in bulk.
+ * <p>
+ * The source is parsed incrementally and persisted in chunks, each chunk in
+ * its own transaction, so a bad row or a failed chunk doesn't abort the whole
+ * load. A source that can't be read any further, like a CSV quoted field that
+ * is never closed, ends the load with an error on that row.
+ * </p>
+ */
+@Traced
+public class PersonaImportService {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private static final int BATCH_SIZE = 100;
+
+    private static final Jsonb JSONB = JsonbBuilder.create();
+
+    @Inject
+    private Logger log;
+
+    @Inject
+    private PersonaRepository personaRepository;
+
+    @Inject
+    private Validator validator;
+
+    /**
+     * Imports newline delimited JSON, one persona object per line.
+     *
+     * @param reader the NDJSON source
+     * @return the import summary
+     */
+    public BulkImportDTO importNdjson(BufferedReader reader) {
+        return importRows(() -> {
+            String line;
+            do {
+                line = reader.readLine();
+            } while (line != null && line.trim().isEmpty());
+            if (line == null) {
+                return null;
+            }
+            String json = line;
+            return () -> {
+                try {
+                    return JSONB.fromJson(json, Persona.class);
+                } catch (JsonbException ex) {
+                    throw new IllegalArgumentException("Malformed JSON: " + ex.getMessage(), ex);
+                }
+            };
+        });
+    }
+
+    /**
+     * Imports CSV with a header line naming the nombre, email, direccion and
+     * salario columns.
+     *
+     * @param reader the CSV source
+     * @return the import summary
+     * @throws IOException if the header line can't be read
+     */
+    public BulkImportDTO importCsv(BufferedReader reader) throws IOException {
+        List<String> header = CsvUtil.readRecord(reader);
+        if (header == null) {
+            return new BulkImportDTO();
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().toLowerCase(), i);
+        }
+        return importRows(() -> {
+            List<String> fields = CsvUtil.readRecord(reader);
+            if (fields == null) {
+                return null;
+            }
+            return () -> {
+                Persona persona = new Persona();
+                persona.setNombre(field(fields, columns, "nombre"));
+                persona.setEmail(field(fields, columns, "email"));
+                persona.setDireccion(field(fields, columns, "direccion"));
+                String salario = field(fields, columns, "salario");
+                try {
+                    persona.setSalario(salario == null ? 0 : Double.parseDouble(salario.trim()));
+                } catch (NumberFormatException ex) {
+                    throw new IllegalArgumentException("Invalid salario: " + salario, ex);
+                }
+                return persona;
+            };
+        });
+    }
+
+    private String field(List<String> fields, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        return index == null || index >= fields.size() ? null : fields.get(index);
+    }
+
+    private BulkImportDTO importRows(RowSource source) {
+        BulkImportDTO result = new BulkImportDTO();
+        List<Persona> pending = new ArrayList<>(CHUNK_SIZE);
+        List<Integer> pendingRows = new ArrayList<>(CHUNK_SIZE);
+        int row = 0;
+        Chunk chunk = new Chunk(1, 1);
+        RowParser parser;
+        while (true) {
+            try {
+                parser = source.next();
+            } catch (IOException ex) {
+                log.warn("Persona import stopped at row {}: {}", row + 1, ex.getMessage());
+                chunk.getErrors().add(new RowError(++row, ex.getMessage()));
+                break;
+            }
+            if (parser == null) {
+                break;
+            }
+            row++;
+            try {
+                Persona persona = parser.parse();
+                persona.setId(null);
+                persona.setVersion(null);
+                Set<ConstraintViolation<Persona>> violations = validator.validate(persona);
+                if (violations.isEmpty()) {
+                    pending.add(persona);
+                    pendingRows.add(row);
+                } else {
+                    chunk.getErrors().add(new RowError(row, violations.stream()
+                            .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                            .collect(joining(", "))));
+                }
+            } catch (IllegalArgumentException ex) {
+                chunk.getErrors().add(new RowError(row, ex.getMessage()));
+            }
+            if (row - chunk.getFirstRow() + 1 == CHUNK_SIZE) {
+                flushChunk(result, chunk, row, pending, pendingRows);
+                chunk = new Chunk(chunk.getNumber() + 1, row + 1);
+            }
+        }
+        if (row >= chunk.getFirstRow()) {
+            flushChunk(result, chunk, row, pending, pendingRows);
+        }
+        log.debug("Imported {} personas, rejected {} rows", result.getCreated(), result.getRejected());
+        return result;
+    }
+
+    private void flushChunk(BulkImportDTO result, Chunk chunk, int lastRow, List<Persona> pending, List<Integer> pendingRows) {
+        chunk.setLastRow(lastRow);
+        if (!pending.isEmpty()) {
+            try {
+                personaRepository.createAll(pending, BATCH_SIZE);
+                chunk.setCreated(pending.size());
+            } catch (RuntimeException ex) {
+                log.warn("Chunk {} of the persona import rolled back: {}", chunk.getNumber(), ex.getMessage());
+                pendingRows.forEach(pendingRow -> chunk.getErrors().add(new RowError(pendingRow, "Chunk rolled back: " + ex.getMessage())));
+            }
+        }
+        pending.clear();
+        pendingRows.clear();
+        result.addChunk(chunk);
+    }
+
+    @FunctionalInterface
+    private interface RowSource {
+
+        /**
+         * @return the parser of the next row, or null at the end of the source
+         */
+        RowParser next() throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface RowParser {
+
+        Persona parse();
+    }
+
+}
@@ -1,8 +1,11 @@
 package com.udea.lab5.service;
 
+import com.udea.lab5.cache.EntityCaches;
+import com.udea.lab5.metrics.Traced;
 import com.udea.lab5.repository.AuthorityRepository;
 import com.udea.lab5.repository.UserRepository;
 import com.udea.lab5.security.AuthoritiesConstants;
+import com.udea.lab5.security.Credential;
 import com.udea.lab5.security.PasswordEncoder;
 import com.udea.lab5.com.udea.lab5.modelo.User;
 import com.udea.lab5.com.udea.lab5.modelo.Authority;
@@ -14,12 +17,16 @@ import java.time.Instant;
 import java.util.*;
 import static java.util.stream.Collectors.*;
 import javax.inject.Inject;
+import javax.persistence.OptimisticLockException;
 import javax.security.enterprise.AuthenticationException;
+import javax.transaction.Transactional;
+import static javax.transaction.Transactional.TxType.REQUIRED;
 import org.slf4j.Logger;
 
 /**
  * Service class for managing users.
  */
+@Traced
 public class UserService {
 
     @Inject
@@ -37,6 +44,12 @@ public class UserService {
     @Inject
     private AuthorityRepository authorityRepository;
 
+    @Inject
+    private EntityCaches entityCaches;
+
+    @Inject
+    private MailService mailService;
+
     public Optional<User> activateRegistration(String key) {
         log.debug("Activating user for activation key {}", key);
         return userRepository.findOneByActivationKey(key)
@@ -45,6 +58,7 @@ public class UserService {
                     user.setActivated(true);
                     user.setActivationKey(null);
                     userRepository.edit(user);
+                    entityCaches.evictUser(user.getLogin());
                     log.debug("Activated user: {}", user);
                     return user;
                 });
@@ -59,10 +73,18 @@ public class UserService {
                     user.setResetKey(null);
                     user.setResetDate(null);
                     userRepository.edit(user);
+                    entityCaches.evictUser(user.getLogin());
                     return user;
                 });
     }
 
+    /**
+     * The reset e-mail is queued in the same transaction as the reset key.
+     *
+     * @param mail the e-mail of the user
+     * @return the user, if the e-mail belongs to an activated user
+     */
+    @Transactional(REQUIRED)
     public Optional<User> requestPasswordReset(String mail) {
         return userRepository.findOneByEmail(mail)
                 .filter(User::getActivated)
@@ -70,10 +92,17 @@ public class UserService {
                     user.setResetKey(RandomUtil.generateResetKey());
                     user.setResetDate(Instant.now());
                     userRepository.edit(user);
+                    mailService.sendPasswordResetMail(user);
+                    entityCaches.evictUser(user.getLogin());
                     return user;
                 });
     }
 
+    /**
+     * Registers a new user, the activation e-mail is queued in the same
+     * transaction.
+     */
+    @Transactional(REQUIRED)
     public User createUser(String login, String password, String firstName, String lastName, String email,
             String langKey) {
 
@@ -97,10 +126,17 @@ public class UserService {
         String currentLogin = securityHelper.getCurrentUserLogin();
         newUser.setCreatedBy(currentLogin != null ? currentLogin : AuthoritiesConstants.ANONYMOUS);
         userRepository.create(newUser);
+        mailService.sendActivationEmail(newUser);
+        entityCaches.evictUser(newUser.getLogin());
         log.debug("Created Information for User: {}", newUser);
         return newUser;
     }
 
+    /**
+     * Creates a user on behalf of an administrator, the creation e-mail is
+     * queued in the same transaction.
+     */
+    @Transactional(REQUIRED)
     public User createUser(UserDTO userDTO) {
         User user = new User();
         user.setLogin(userDTO.getLogin());
@@ -121,6 +157,8 @@ public class UserService {
         user.setResetDate(Instant.now());
         user.setActivated(true);
         userRepository.create(user);
+        mailService.sendCreationEmail(user);
+        entityCaches.evictUser(user.getLogin());
         log.debug("Created Information for User: {}", user);
         return user;
     }
@@ -133,14 +171,30 @@ public class UserService {
                     user.setEmail(email);
                     user.setLangKey(langKey);
                     userRepository.edit(user);
+                    entityCaches.evictUser(user.getLogin());
                     log.debug("Changed Information for User: {}", user);
                 });
     }
 
-    public Optional<UserDTO> updateUser(UserDTO userDTO) {
-        return Optional.of(userRepository
+    /**
+     * Update all information for a specific user. The version is compared on
+     * the managed user and flushed in the same transaction, so a concurrent
+     * update raises an {@link OptimisticLockException}.
+     *
+     * @param userDTO user to update
+     * @param expectedVersion the version the caller validated the update
+     * against
+     * @return updated user
+     */
+    @Transactional(REQUIRED)
+    public Optional<UserDTO> updateUser(UserDTO userDTO, Long expectedVersion) {
+        return Optional.ofNullable(userRepository
                 .find(userDTO.getId()))
                 .map(user -> {
+                    if (!Objects.equals(user.getVersion(), expectedVersion)) {
+                        throw new OptimisticLockException(user);
+                    }
+                    entityCaches.evictUser(user.getLogin());
                     user.setLogin(userDTO.getLogin());
                     user.setFirstName(userDTO.getFirstName());
                     user.setLastName(userDTO.getLastName());
@@ -152,7 +206,8 @@ public class UserService {
                             .map(authorityRepository::find)
                             .collect(toSet())
                     );
-                    userRepository.edit(user);
+                    user = userRepository.editAndFlush(user);
+                    entityCaches.evictUser(user.getLogin());
                     log.debug("Changed Information for User: {}", user);
                     return user;
                 })
@@ -162,17 +217,33 @@ public class UserService {
     public void deleteUser(String login) {
         userRepository.findOneByLogin(login).ifPresent(user -> {
             userRepository.remove(user);
+            entityCaches.evictUser(user.getLogin());
             log.debug("Deleted User: {}", user);
         });
     }
 
+    /**
+     * Deletes the users with the given logins without loading them.
+     *
+     * @param logins the logins of the users to delete
+     * @return the number of deleted users
+     */
+    public int deleteUsers(Collection<String> logins) {
+        List<Long> ids = userRepository.findIdsByLogins(logins);
+        int deleted = ids.isEmpty() ? 0 : userRepository.removeAll(ids);
+        logins.forEach(entityCaches::evictUser);
+        log.debug("Deleted {} Users", deleted);
+        return deleted;
+    }
+
     public void changePassword(String currentPassword, String newPassword) {
         userRepository.findOneByLogin(securityHelper.getCurrentUserLogin())
-                .filter(user -> user.getPassword().equals(passwordEncoder.encode(currentPassword)))
+                .filter(user -> passwordEncoder.matches(currentPassword, user.getPassword()))
                 .ifPresent(user -> {
                     String encryptedPassword = passwordEncoder.encode(newPassword);
                     user.setPassword(encryptedPassword);
                     userRepository.edit(user);
+                    entityCaches.evictUser(user.getLogin());
                     log.debug("Changed password for User: {}", user);
                 });
     }
@@ -189,11 +260,39 @@ public class UserService {
         return userRepository.findOneWithAuthoritiesByLogin(securityHelper.getCurrentUserLogin()).orElse(null);
     }
 
-    public User authenticate(LoginDTO loginDTO) throws AuthenticationException {
-        Optional<User> userOptional = userRepository.findOneWithAuthoritiesByLogin(loginDTO.getUsername());
-        return userOptional.filter(User::getActivated)
-                .filter(user -> user.getPassword().equals(passwordEncoder.encode(loginDTO.getPassword())))
+    /**
+     * Checks the password against the cached credential of the user, the
+     * database is only queried on a cache miss. A hash from an older scheme is
+     * replaced with one from the current scheme once the password matches.
+     *
+     * @param loginDTO the login and password
+     * @return the credential of the authenticated user
+     * @throws AuthenticationException if the user doesn't exist, isn't
+     * activated or the password doesn't match
+     */
+    public Credential authenticate(LoginDTO loginDTO) throws AuthenticationException {
+        Optional<Credential> activated = userRepository.findCredentialByLogin(loginDTO.getUsername())
+                .filter(Credential::isActivated);
+        if (!activated.isPresent()) {
+            passwordEncoder.matchesNone(loginDTO.getPassword());
+            throw new AuthenticationException();
+        }
+        Credential credential = activated
+                .filter(candidate -> passwordEncoder.matches(loginDTO.getPassword(), candidate.getPasswordHash()))
                 .orElseThrow(AuthenticationException::new);
+        if (passwordEncoder.needsRehash(credential.getPasswordHash())) {
+            rehashPassword(credential.getLogin(), loginDTO.getPassword());
+        }
+        return credential;
+    }
+
+    private void rehashPassword(String login, String password) {
+        userRepository.findOneByLogin(login).ifPresent(user -> {
+            user.setPassword(passwordEncoder.encode(password));
+            userRepository.edit(user);
+            entityCaches.evictUser(user.getLogin());
+            log.debug("Rehashed password for User: {}", user.getLogin());
+        });
     }
 
     /**
@@ -0,0 +1,145 @@
+package com.udea.lab5.service.dto;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A DTO summarizing a bulk import, chunk by chunk, with the rejected rows.
+ */
+public class BulkImportDTO implements Serializable {
+
+    private int created;
+
+    private int rejected;
+
+    private List<Chunk> chunks = new ArrayList<>();
+
+    public int getCreated() {
+        return created;
+    }
+
+    public void setCreated(int created) {
+        this.created = created;
+    }
+
+    public int getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(int rejected) {
+        this.rejected = rejected;
+    }
+
+    public List<Chunk> getChunks() {
+        return chunks;
+    }
+
+    public void setChunks(List<Chunk> chunks) {
+        this.chunks = chunks;
+    }
+
+    public void addChunk(Chunk chunk) {
+        chunks.add(chunk);
+        created += chunk.getCreated();
+        rejected += chunk.getErrors().size();
+    }
+
+    /**
+     * The outcome of one chunk, persisted in its own transaction.
+     */
+    public static class Chunk implements Serializable {
+
+        private int number;
+
+        private int firstRow;
+
+        private int lastRow;
+
+        private int created;
+
+        private List<RowError> errors = new ArrayList<>();
+
+        public Chunk() {
+        }
+
+        public Chunk(int number, int firstRow) {
+            this.number = number;
+            this.firstRow = firstRow;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        public void setNumber(int number) {
+            this.number = number;
+        }
+
+        public int getFirstRow() {
+            return firstRow;
+        }
+
+        public void setFirstRow(int firstRow) {
+            this.firstRow = firstRow;
+        }
+
+        public int getLastRow() {
+            return lastRow;
+        }
+
+        public void setLastRow(int lastRow) {
+            this.lastRow = lastRow;
+        }
+
+        public int getCreated() {
+            return created;
+        }
+
+        public void setCreated(int created) {
+            this.created = created;
+        }
+
+        public List<RowError> getErrors() {
+            return errors;
+        }
+
+        public void setErrors(List<RowError> errors) {
+            this.errors = errors;
+        }
+    }
+
+    /**
+     * A row that could not be imported.
+     */
+    public static class RowError implements Serializable {
+
+        private int row;
+
+        private String message;
+
+        public RowError() {
+        }
+
+        public RowError(int row, String message) {
+            this.row = row;
+            this.message = message;
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        public void setRow(int row) {
+            this.row = row;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public void setMessage(String message) {
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.udea.lab5.web;
+
+import com.udea.lab5.controller.util.HeaderUtil;
+import javax.inject.Inject;
+import javax.persistence.OptimisticLockException;
+import javax.ws.rs.core.Response;
+import static javax.ws.rs.core.Response.Status.PRECONDITION_FAILED;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+import org.slf4j.Logger;
+
+/**
+ * Answers an update of an entity that was changed since the client read it
+ * with 412 (Precondition Failed), like a mismatched {@code If-Match}.
+ */
+@Provider
+public class OptimisticLockExceptionMapper implements ExceptionMapper<OptimisticLockException> {
+
+    @Inject
+    private Logger log;
+
+    @Override
+    public Response toResponse(OptimisticLockException exception) {
+        Object entity = exception.getEntity();
+        String entityName = entity == null ? "entity" : entity.getClass().getSimpleName().toLowerCase();
+        log.debug("Concurrent update of {}: {}", entityName, exception.getMessage());
+        return HeaderUtil.createFailureAlert(Response.status(PRECONDITION_FAILED), entityName, "concurrencyFailure",
+                "The entity was updated by another request").build();
+    }
+}
@@ -0,0 +1,98 @@
+package com.udea.lab5.web;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.Arrays;
+import javax.annotation.Priority;
+import javax.inject.Inject;
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import static javax.ws.rs.core.Response.Status.TOO_MANY_REQUESTS;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Rejects the requests to the {@link RateLimited} resources with 429 (Too Many
+ * Requests) once the client IP, or the login named in the body, has used up
+ * its bucket.
+ */
+@Provider
+@RateLimited
+@Priority(Priorities.AUTHENTICATION)
+public class RateLimitFilter implements ContainerRequestFilter {
+
+    private static final int MAX_BODY_SIZE = 16384;
+
+    @Inject
+    private RateLimiter rateLimiter;
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    @Context
+    private HttpServletRequest request;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) throws IOException {
+        RateLimited rateLimited = resourceInfo.getResourceMethod().getAnnotation(RateLimited.class);
+        if (rateLimited == null) {
+            return;
+        }
+        long retryAfter = rateLimiter.tryAcquire(rateLimited.value() + ".ip", request.getRemoteAddr());
+        if (retryAfter == 0 && !rateLimited.key().isEmpty() && requestContext.hasEntity()) {
+            String login = readLogin(requestContext, rateLimited.key());
+            if (login != null && !login.isEmpty()) {
+                retryAfter = rateLimiter.tryAcquire(rateLimited.value() + ".login", login.trim().toLowerCase());
+            }
+        }
+        if (retryAfter > 0) {
+            requestContext.abortWith(Response.status(TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, retryAfter)
+                    .build());
+        }
+    }
+
+    /**
+     * Buffers at most {@code MAX_BODY_SIZE + 1} bytes of the body, and puts
+     * them back in front of the rest of the stream, so it can still be read by
+     * the resource method.
+     */
+    private String readLogin(ContainerRequestContext requestContext, String key) throws IOException {
+        InputStream entity = requestContext.getEntityStream();
+        byte[] chunk = new byte[MAX_BODY_SIZE + 1];
+        int read = 0;
+        int length;
+        while (read < chunk.length && (length = entity.read(chunk, read, chunk.length - read)) != -1) {
+            read += length;
+        }
+        byte[] body = Arrays.copyOf(chunk, read);
+        if (read > MAX_BODY_SIZE) {
+            requestContext.setEntityStream(new SequenceInputStream(new ByteArrayInputStream(body), entity));
+            return null;
+        }
+        requestContext.setEntityStream(new ByteArrayInputStream(body));
+        if (RateLimited.BODY.equals(key)) {
+            return new String(body, UTF_8);
+        }
+        try (JsonReader reader = Json.createReader(new ByteArrayInputStream(body))) {
+            JsonValue value = reader.readObject().get(key);
+            return value instanceof JsonString ? ((JsonString) value).getString() : null;
+        } catch (JsonException | ClassCastException ex) {
+            return null;
+        }
+    }
+}
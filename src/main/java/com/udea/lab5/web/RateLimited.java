@@ -0,0 +1,34 @@
+package com.udea.lab5.web;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.TYPE;
+import java.lang.annotation.Retention;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+import java.lang.annotation.Target;
+import javax.ws.rs.NameBinding;
+
+/**
+ * Throttles the resource method per client IP and, when a key is given, per
+ * login, with the limits configured under {@code ratelimit.<value>}.
+ */
+@NameBinding
+@Retention(RUNTIME)
+@Target({TYPE, METHOD})
+public @interface RateLimited {
+
+    /**
+     * The key naming the whole request body, for plain text bodies.
+     */
+    String BODY = "*";
+
+    /**
+     * @return the name of the limits
+     */
+    String value() default "";
+
+    /**
+     * @return the field of the JSON body holding the login, {@link #BODY} for
+     * the whole body, or empty to only limit per client IP
+     */
+    String key() default "";
+}
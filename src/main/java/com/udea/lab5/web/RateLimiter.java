@@ -0,0 +1,173 @@
+package com.udea.lab5.web;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+
+/**
+ * Token buckets per limit and key, configured with
+ * {@code ratelimit.<limit>.capacity} and
+ * {@code ratelimit.<limit>.refillPerMinute}.
+ *
+ * <p>
+ * The buckets are spread over lock stripes, each an access ordered map, so
+ * concurrent requests for different keys rarely contend. A bucket idle long
+ * enough to be full again is dropped, and each stripe is bounded, evicting its
+ * least recently used bucket.</p>
+ */
+@ApplicationScoped
+public class RateLimiter {
+
+    private static final int STRIPES = 64;
+
+    private static final String RATE_LIMIT = "ratelimit.";
+
+    @Inject
+    private Config config;
+
+    @Inject
+    private MetricRegistry registry;
+
+    @Inject
+    @ConfigProperty(name = "ratelimit.maxKeys", defaultValue = "100000")
+    private int maxKeys;
+
+    private final ConcurrentMap<String, Limit> limits = new ConcurrentHashMap<>();
+
+    private Stripe[] stripes;
+
+    @PostConstruct
+    public void init() {
+        stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(Math.max(1, maxKeys / STRIPES));
+        }
+        String bucketsMetric = RATE_LIMIT + "buckets";
+        if (!registry.getGauges().containsKey(bucketsMetric)) {
+            registry.register(bucketsMetric, (Gauge<Integer>) this::size);
+        }
+    }
+
+    /**
+     * Takes a token from the bucket of the key.
+     *
+     * @param limitName the limit, like "authenticate.ip"
+     * @param key the client IP or login
+     * @return 0 if the request is allowed, or else the number of seconds until
+     * a token is available
+     */
+    public long tryAcquire(String limitName, String key) {
+        Limit limit = limits.computeIfAbsent(limitName, this::limit);
+        String bucketKey = limitName + ':' + key;
+        Stripe stripe = stripes[(bucketKey.hashCode() & Integer.MAX_VALUE) % STRIPES];
+        long now = System.nanoTime();
+        long retryAfterNanos;
+        synchronized (stripe) {
+            stripe.evictIdle(now);
+            Bucket bucket = stripe.buckets.computeIfAbsent(bucketKey, k -> new Bucket(limit, now));
+            retryAfterNanos = bucket.tryAcquire(now);
+        }
+        if (retryAfterNanos > 0) {
+            limit.rejected.inc();
+            return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(retryAfterNanos));
+        }
+        return 0;
+    }
+
+    private Limit limit(String limitName) {
+        int capacity = config.getOptionalValue(RATE_LIMIT + limitName + ".capacity", Integer.class).orElse(10);
+        double refillPerMinute = config.getOptionalValue(RATE_LIMIT + limitName + ".refillPerMinute", Double.class).orElse(10.0);
+        return new Limit(capacity, refillPerMinute, registry.counter(RATE_LIMIT + limitName + ".rejected"));
+    }
+
+    private int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.buckets.size();
+            }
+        }
+        return size;
+    }
+
+    private static class Limit {
+
+        private final int capacity;
+        private final double tokensPerNano;
+        private final long idleNanos;
+        private final Counter rejected;
+
+        Limit(int capacity, double refillPerMinute, Counter rejected) {
+            this.capacity = capacity;
+            this.tokensPerNano = refillPerMinute / TimeUnit.MINUTES.toNanos(1);
+            this.idleNanos = (long) Math.ceil(capacity / tokensPerNano);
+            this.rejected = rejected;
+        }
+    }
+
+    private static class Bucket {
+
+        private final Limit limit;
+        private double tokens;
+        private long refilledAt;
+
+        Bucket(Limit limit, long now) {
+            this.limit = limit;
+            this.tokens = limit.capacity;
+            this.refilledAt = now;
+        }
+
+        /**
+         * @return 0 if a token was taken, or else the nanoseconds until one is
+         * available
+         */
+        long tryAcquire(long now) {
+            tokens = Math.min(limit.capacity, tokens + (now - refilledAt) * limit.tokensPerNano);
+            refilledAt = now;
+            if (tokens >= 1) {
+                tokens--;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / limit.tokensPerNano);
+        }
+
+        boolean isIdle(long now) {
+            return now - refilledAt >= limit.idleNanos;
+        }
+    }
+
+    private static class Stripe {
+
+        private final Map<String, Bucket> buckets;
+
+        Stripe(int maxSize) {
+            this.buckets = new LinkedHashMap<String, Bucket>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+
+        /**
+         * The map is in access order, the idle buckets are at its head.
+         */
+        void evictIdle(long now) {
+            Iterator<Bucket> iterator = buckets.values().iterator();
+            while (iterator.hasNext() && iterator.next().isIdle(now)) {
+                iterator.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.udea.lab5.web;
+
+import com.udea.lab5.metrics.QueueFullException;
+import java.util.concurrent.RejectedExecutionException;
+import javax.inject.Inject;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import static javax.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+import org.slf4j.Logger;
+
+/**
+ * Answers a request whose work was rejected by a full bounded pool, like the
+ * password hashing one, with 503 (Service Unavailable). The Retry-After is the
+ * one of the executor that rejected the work.
+ */
+@Provider
+public class RejectedExecutionExceptionMapper implements ExceptionMapper<RejectedExecutionException> {
+
+    private static final long DEFAULT_RETRY_AFTER_IN_SECONDS = 1;
+
+    @Inject
+    private Logger log;
+
+    @Override
+    public Response toResponse(RejectedExecutionException exception) {
+        log.warn("Request rejected: {}", exception.getMessage());
+        long retryAfter = exception instanceof QueueFullException
+                ? ((QueueFullException) exception).getRetryAfterInSeconds()
+                : DEFAULT_RETRY_AFTER_IN_SECONDS;
+        return Response.status(SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, retryAfter)
+                .build();
+    }
+}
@@ -7,7 +7,8 @@ export const ACTION_TYPES = {
   FETCH_LOGS_CHANGE_LEVEL: 'administration/FETCH_LOGS_CHANGE_LEVEL',
   FETCH_HEALTH: 'administration/FETCH_HEALTH',
   FETCH_METRICS: 'administration/FETCH_METRICS',
-  FETCH_THREAD_DUMP: 'administration/FETCH_THREAD_DUMP'
+  FETCH_THREAD_DUMP: 'administration/FETCH_THREAD_DUMP',
+  FETCH_TRACES: 'administration/FETCH_TRACES'
 };
 
 const initialState = {
@@ -19,6 +20,7 @@ const initialState = {
   health: {} as any,
   metrics: {} as any,
   threadDump: [],
+  traces: [] as any[],
   totalItems: 0
 };
 
@@ -30,6 +32,7 @@ export default (state: AdministrationState = initialState, action): Administrati
   switch (action.type) {
     case REQUEST(ACTION_TYPES.FETCH_METRICS):
     case REQUEST(ACTION_TYPES.FETCH_THREAD_DUMP):
+    case REQUEST(ACTION_TYPES.FETCH_TRACES):
     case REQUEST(ACTION_TYPES.FETCH_LOGS):
     case REQUEST(ACTION_TYPES.FETCH_HEALTH):
       return {
@@ -39,6 +42,7 @@ export default (state: AdministrationState = initialState, action): Administrati
       };
     case FAILURE(ACTION_TYPES.FETCH_METRICS):
     case FAILURE(ACTION_TYPES.FETCH_THREAD_DUMP):
+    case FAILURE(ACTION_TYPES.FETCH_TRACES):
     case FAILURE(ACTION_TYPES.FETCH_LOGS):
     case FAILURE(ACTION_TYPES.FETCH_HEALTH):
       return {
@@ -58,6 +62,12 @@ export default (state: AdministrationState = initialState, action): Administrati
         loading: false,
         threadDump: action.payload.data
       };
+    case SUCCESS(ACTION_TYPES.FETCH_TRACES):
+      return {
+        ...state,
+        loading: false,
+        traces: action.payload.data
+      };
     case SUCCESS(ACTION_TYPES.FETCH_LOGS):
       return {
         ...state,
@@ -94,6 +104,11 @@ export const systemThreadDump = () => ({
   payload: axios.get('/threaddump')
 });
 
+export const systemTraces = () => ({
+  type: ACTION_TYPES.FETCH_TRACES,
+  payload: axios.get('api/traces')
+});
+
 export const getLoggers = () => ({
   type: ACTION_TYPES.FETCH_LOGS,
   payload: axios.get('api/logs')
@@ -5,7 +5,7 @@ import { Translate, TextFormat } from 'react-jhipster';
 import { FontAwesomeIcon } from '@fortawesome/react-fontawesome';
 
 import { APP_WHOLE_NUMBER_FORMAT, APP_TWO_DIGITS_AFTER_POINT_NUMBER_FORMAT } from 'app/config/constants';
-import { systemMetrics, systemThreadDump } from '../administration.reducer';
+import { systemMetrics, systemThreadDump, systemTraces } from '../administration.reducer';
 import MetricsModal from './metrics-modal';
 import { IRootState } from 'app/shared/reducers';
 
@@ -22,11 +22,13 @@ export class MetricsPage extends React.Component<IMetricsPageProps, IMetricsPage
 
   componentDidMount() {
     this.props.systemMetrics();
+    this.props.systemTraces();
   }
 
   getMetrics = () => {
     if (!this.props.isFetching) {
       this.props.systemMetrics();
+      this.props.systemTraces();
     }
   };
 
@@ -48,12 +50,20 @@ export class MetricsPage extends React.Component<IMetricsPageProps, IMetricsPage
   getStats = metrics => {
     const stat = {
       servicesStats: {},
-      cachesStats: {}
+      cachesStats: {},
+      queriesStats: {}
     };
     if (!this.props.isFetching && metrics && metrics.application) {
       Object.keys(metrics.application).forEach((key, indexNm) => {
         if (key.indexOf('controller') !== -1) {
           stat.servicesStats[key] = metrics.application[key];
+        } else if (key.indexOf('repository.') === 0 && key.endsWith('.latency')) {
+          const name = key.substring('repository.'.length, key.length - '.latency'.length);
+          stat.queriesStats[name] = {
+            latency: metrics.application[key],
+            rows: metrics.application[`repository.${name}.rows`],
+            slow: metrics.application[`repository.${name}.slow`]
+          };
         } else if (key.indexOf('net.sf.ehcache.Cache') !== -1) {
           // remove gets or puts
           const index = key.lastIndexOf('.');
@@ -79,6 +89,132 @@ export class MetricsPage extends React.Component<IMetricsPageProps, IMetricsPage
       </Row>
     ) : null;
 
+  renderQueries = queriesStats => (
+    <Row>
+      <Col sm="12">
+        <h3>Repository queries (time in millisecond)</h3>
+      </Col>
+      <Table>
+        <thead>
+          <tr>
+            <th>Query</th>
+            <th>Count</th>
+            <th>Mean</th>
+            <th>p50</th>
+            <th>p95</th>
+            <th>p99</th>
+            <th>Max</th>
+            <th>Mean rows</th>
+            <th>Slow</th>
+          </tr>
+        </thead>
+        <tbody>
+          {Object.keys(queriesStats)
+            .sort()
+            .map(key => (
+              <tr key={key}>
+                <td>{key}</td>
+                <td>{queriesStats[key].latency.count}</td>
+                <td>
+                  <TextFormat
+                    value={queriesStats[key].latency.mean / 1000}
+                    type="number"
+                    format={APP_TWO_DIGITS_AFTER_POINT_NUMBER_FORMAT}
+                  />
+                </td>
+                <td>
+                  <TextFormat
+                    value={queriesStats[key].latency.p50 / 1000}
+                    type="number"
+                    format={APP_TWO_DIGITS_AFTER_POINT_NUMBER_FORMAT}
+                  />
+                </td>
+                <td>
+                  <TextFormat
+                    value={queriesStats[key].latency.p95 / 1000}
+                    type="number"
+                    format={APP_TWO_DIGITS_AFTER_POINT_NUMBER_FORMAT}
+                  />
+                </td>
+                <td>
+                  <TextFormat
+                    value={queriesStats[key].latency.p99 / 1000}
+                    type="number"
+                    format={APP_TWO_DIGITS_AFTER_POINT_NUMBER_FORMAT}
+                  />
+                </td>
+                <td>
+                  <TextFormat
+                    value={queriesStats[key].latency.max / 1000}
+                    type="number"
+                    format={APP_TWO_DIGITS_AFTER_POINT_NUMBER_FORMAT}
+                  />
+                </td>
+                <td>
+                  <TextFormat
+                    value={queriesStats[key].rows ? queriesStats[key].rows.mean : 0}
+                    type="number"
+                    format={APP_WHOLE_NUMBER_FORMAT}
+                  />
+                </td>
+                <td>{queriesStats[key].slow ? queriesStats[key].slow : 0}</td>
+              </tr>
+            ))}
+        </tbody>
+      </Table>
+    </Row>
+  );
+
+  renderTraces = traces => (
+    <Row>
+      <Col sm="12">
+        <h3>Slowest requests (time in millisecond)</h3>
+      </Col>
+      <Table>
+        <thead>
+          <tr>
+            <th>Request id</th>
+            <th>Request</th>
+            <th>Status</th>
+            <th className="text-right">Duration</th>
+            <th>Breakdown</th>
+          </tr>
+        </thead>
+        <tbody>
+          {traces.map(trace => (
+            <tr key={trace.id}>
+              <td>{trace.id}</td>
+              <td>
+                {trace.method} {trace.path}
+                <br />
+                <small>{trace.route}</small>
+              </td>
+              <td>{trace.status}</td>
+              <td className="text-right">
+                <TextFormat value={trace.durationMicros / 1000} type="number" format={APP_TWO_DIGITS_AFTER_POINT_NUMBER_FORMAT} />
+              </td>
+              <td>
+                {trace.spans.map((span, index) => (
+                  <div key={index} style={{ paddingLeft: `${(span.depth - 1) * 1}em` }}>
+                    <small>
+                      {span.name} @
+                      <TextFormat value={span.offsetMicros / 1000} type="number" format={APP_TWO_DIGITS_AFTER_POINT_NUMBER_FORMAT} />:{' '}
+                      {span.durationMicros < 0 ? (
+                        '-'
+                      ) : (
+                        <TextFormat value={span.durationMicros / 1000} type="number" format={APP_TWO_DIGITS_AFTER_POINT_NUMBER_FORMAT} />
+                      )}
+                    </small>
+                  </div>
+                ))}
+              </td>
+            </tr>
+          ))}
+        </tbody>
+      </Table>
+    </Row>
+  );
+
   renderModal = () => <MetricsModal handleClose={this.handleClose} showModal={this.state.showModal} threadDump={this.props.threadDump} />;
 
   renderBase = metrics => (
@@ -164,9 +300,9 @@ export class MetricsPage extends React.Component<IMetricsPageProps, IMetricsPage
   );
 
   render() {
-    const { metrics, isFetching } = this.props;
+    const { metrics, isFetching, traces } = this.props;
     const data = metrics || {};
-    const { servicesStats, cachesStats } = this.getStats(data);
+    const { servicesStats, cachesStats, queriesStats } = this.getStats(data);
     return (
       <div>
         <h2 className="metrics-page-heading">Application Metrics</h2>
@@ -403,6 +539,10 @@ export class MetricsPage extends React.Component<IMetricsPageProps, IMetricsPage
           ''
         )}
 
+        {Object.keys(queriesStats).length > 0 ? this.renderQueries(queriesStats) : ''}
+
+        {traces && traces.length > 0 ? this.renderTraces(traces) : ''}
+
         {this.renderModal()}
       </div>
     );
@@ -412,10 +552,11 @@ export class MetricsPage extends React.Component<IMetricsPageProps, IMetricsPage
 const mapStateToProps = (storeState: IRootState) => ({
   metrics: storeState.administration.metrics,
   isFetching: storeState.administration.loading,
-  threadDump: storeState.administration.threadDump
+  threadDump: storeState.administration.threadDump,
+  traces: storeState.administration.traces
 });
 
-const mapDispatchToProps = { systemMetrics, systemThreadDump };
+const mapDispatchToProps = { systemMetrics, systemThreadDump, systemTraces };
 
 type StateProps = ReturnType<typeof mapStateToProps>;
 type DispatchProps = typeof mapDispatchToProps;
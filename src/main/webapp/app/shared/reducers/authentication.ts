@@ -135,6 +135,11 @@ export const clearAuthToken = () => {
 };
 
 export const logout = () => dispatch => {
+  const jwt = Storage.local.get(AUTH_TOKEN_KEY) || Storage.session.get(AUTH_TOKEN_KEY);
+  if (jwt) {
+    // revokes the token server side, the local session ends whatever the outcome
+    axios.post('api/logout', null, { headers: { Authorization: `Bearer ${jwt}` } }).catch(() => undefined);
+  }
   clearAuthToken();
   dispatch({
     type: ACTION_TYPES.LOGOUT
@@ -0,0 +1,36 @@
+package com.udea.lab5.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class PersonaFilterTest {
+
+    @Test
+    public void blankNombreAloneIsEmpty() {
+        PersonaFilter filter = new PersonaFilter(null, "", null, null);
+
+        assertNull(filter.getNombrePrefix());
+        assertTrue(filter.isEmpty());
+    }
+
+    @Test
+    public void blankEmailAloneIsEmpty() {
+        assertTrue(new PersonaFilter("  ", null, null, null).isEmpty());
+    }
+
+    @Test
+    public void nombreIsTrimmed() {
+        PersonaFilter filter = new PersonaFilter(null, " Ana ", null, null);
+
+        assertEquals("Ana", filter.getNombrePrefix());
+        assertFalse(filter.isEmpty());
+    }
+
+    @Test
+    public void salarioBoundIsAFilter() {
+        assertFalse(new PersonaFilter("", "", 0.0, null).isEmpty());
+    }
+}